@@ -0,0 +1,36 @@
+package org.springframework.context.event.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 依次用1,2,4...N个发布线程运行基准测试，并打开GC profiler输出分配速率(gc.alloc.rate.norm)；
+ * 吞吐量来自Throughput模式，延迟百分位来自SampleTime模式(p0.50, p0.90, p0.99...)
+ * 用法：java -jar benchmarks.jar [最大线程数] [基准方法的正则]
+ * 也可以直接用JMH自带的参数：java -cp benchmarks.jar org.openjdk.jmh.Main -t 8 -prof gc
+ */
+public class EventBenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        int maxThreads = (args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors());
+        String include = (args.length > 1 ? args[1] : MulticasterBenchmark.class.getSimpleName());
+        for (int threads = 1; threads <= maxThreads; threads = nextThreadCount(threads, maxThreads)) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class);
+            new Runner(options.build()).run();
+        }
+    }
+
+    //按2的幂增长，最后一轮一定是maxThreads
+    private static int nextThreadCount(int threads, int maxThreads) {
+        if (threads == maxThreads) {
+            return maxThreads + 1;
+        }
+        return Math.min(threads * 2, maxThreads);
+    }
+}
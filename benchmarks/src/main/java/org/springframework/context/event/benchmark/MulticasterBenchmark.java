@@ -0,0 +1,158 @@
+package org.springframework.context.event.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.BoundedAsyncEventDispatcher;
+import org.springframework.context.event.MailboxEventDispatcher;
+import org.springframework.context.event.SimpleApplicationEventMulticaster;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 事件发布路径的基准测试：
+ * 1. 单个发布(publishSingle)和批量发布(publishBurst)，批量的结果按单个事件折算
+ * 2. 缓存命中(publishSingle)和缓存未命中(publishCacheMiss，每次先增删一个监听器让注册表换代)
+ * 3. 监听器数量和执行方式通过@Param组合，发布线程数由EventBenchmarkRunner或者命令行-t指定
+ * 异步模式下队列都是有界的，发布线程被背压限速，测到的是稳定状态下的吞吐
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MulticasterBenchmark {
+
+    private static final int BURST_SIZE = 64;
+
+    /**
+     * SYNC: 发布线程直接调用
+     * EXECUTOR: setTaskExecutor，每个监听器一个Runnable
+     * BOUNDED: BoundedAsyncEventDispatcher
+     * MAILBOX: MailboxEventDispatcher
+     */
+    public enum DispatchMode {
+        SYNC, EXECUTOR, BOUNDED, MAILBOX
+    }
+
+    @Param({"1", "10", "100", "1000"})
+    public int listenerCount;
+
+    @Param({"SYNC", "EXECUTOR", "BOUNDED", "MAILBOX"})
+    public DispatchMode dispatchMode;
+
+    private SimpleApplicationEventMulticaster multicaster;
+
+    private ThreadPoolExecutor executor;
+
+    private BoundedAsyncEventDispatcher boundedDispatcher;
+
+    //增删它来制造缓存未命中，它监听的是另一种事件，不影响被测事件的监听器
+    private final ApplicationListener<OtherEvent> probe = new ApplicationListener<OtherEvent>() {
+        public void onApplicationEvent(OtherEvent event) {
+        }
+    };
+
+    private final BenchmarkEvent event = new BenchmarkEvent(this);
+
+    private List<BenchmarkEvent> burst;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.multicaster = new SimpleApplicationEventMulticaster();
+        int workers = Runtime.getRuntime().availableProcessors();
+        switch (this.dispatchMode) {
+            case EXECUTOR:
+                this.executor = newExecutor(workers);
+                this.multicaster.setTaskExecutor(this.executor);
+                break;
+            case BOUNDED:
+                this.boundedDispatcher = new BoundedAsyncEventDispatcher("bench-dispatch-");
+                this.boundedDispatcher.setDaemon(true);
+                this.boundedDispatcher.setWorkerCount(workers);
+                this.multicaster.setEventDispatcher(this.boundedDispatcher);
+                break;
+            case MAILBOX:
+                this.executor = newExecutor(workers);
+                this.multicaster.setEventDispatcher(new MailboxEventDispatcher(this.executor));
+                break;
+            default:
+                break;
+        }
+        for (int i = 0; i < this.listenerCount; i++) {
+            this.multicaster.addApplicationListener(new CountingListener());
+        }
+        this.burst = new ArrayList<BenchmarkEvent>(BURST_SIZE);
+        for (int i = 0; i < BURST_SIZE; i++) {
+            this.burst.add(new BenchmarkEvent(this));
+        }
+    }
+
+    //有界队列+调用者执行，队列满时发布线程自己执行，避免任务无限堆积
+    private static ThreadPoolExecutor newExecutor(int workers) {
+        return new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(1024), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+        if (this.boundedDispatcher != null) {
+            this.boundedDispatcher.destroy();
+        }
+    }
+
+    @Benchmark
+    public void publishSingle() {
+        this.multicaster.multicastEvent(this.event);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST_SIZE)
+    public void publishBurst() {
+        this.multicaster.multicastEvents(this.burst);
+    }
+
+    @Benchmark
+    public void publishCacheMiss() {
+        this.multicaster.addApplicationListener(this.probe);
+        this.multicaster.removeApplicationListener(this.probe);
+        this.multicaster.multicastEvent(this.event);
+    }
+
+
+    public static class BenchmarkEvent extends ApplicationEvent {
+
+        public BenchmarkEvent(Object source) {
+            super(source);
+        }
+    }
+
+
+    public static class OtherEvent extends ApplicationEvent {
+
+        public OtherEvent(Object source) {
+            super(source);
+        }
+    }
+
+
+    /**
+     * 只做一次计数，尽量让结果反映发布路径本身的开销；计数不要求精确，所以不用原子变量
+     */
+    static class CountingListener implements ApplicationListener<BenchmarkEvent> {
+
+        long count;
+
+        public void onApplicationEvent(BenchmarkEvent event) {
+            this.count++;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package org.springframework.context;
 
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 封装事件发布者的功能，是Application的父接口之一
  */
@@ -11,4 +14,16 @@ public interface ApplicationEventPublisher {
      * 通知所有注册的监听器，该事件发生了，事件可以是spring定义事件，也可以是自定义
      */
     void publishEvent(ApplicationEvent event);
+
+    /**
+     * 批量通知，适合一次性产生大量事件的场景，例如导入文件时每一行一个事件
+     */
+    void publishEvents(Collection<? extends ApplicationEvent> events);
+
+    /**
+     * 发布事件，返回的CompletableFuture在所有监听器结束后完成，而不是等待监听器执行；
+     * 调用方可以在上面继续编排后续操作，监听器的异常汇总在EventPublicationException中
+     * @see org.springframework.context.event.EventPublicationException
+     */
+    CompletableFuture<Void> publishEventAsync(ApplicationEvent event);
 }
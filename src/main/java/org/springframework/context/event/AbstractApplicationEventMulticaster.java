@@ -5,46 +5,95 @@ import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
+import org.springframework.core.OrderComparator;
+import org.springframework.core.Ordered;
+import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.ObjectUtils;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
 
 /**
  * 提供基本监听器注册工具，它的实现类是SimpleApplicationEventMulticaster
  *
- * 1. 提供了默认的检索器，默认的检索器是缓存数据的来源，也就是说如果没有这个缓存，需要缓存的时候，需要从这里面
+ * 1. 提供了默认的注册表，注册表是缓存数据的来源，也就是说如果没有这个缓存，需要缓存的时候，需要从这里面
  * 遍历，取出符合条件的进行缓存
- * 2. 缓存是一个Map，缓存了支持该事件类型和事件源的所有监听器实例和beanName
+ * 2. 缓存是一个Map，缓存了支持该事件类型和事件源的所有监听器实例
  * (1) 不缓存不是bean工厂所属类加载器的事件，至于为啥，不知道
  * (2) 如果不是，则会每次获取的时候都会重新检索一次
- * (3) 获取缓存时，一次通过并发Map访问，一次通过互斥变量访问
+ * (3) 获取缓存时只通过并发Map访问，不再有互斥变量
  * 3. 为了可以支持缓存，有一个Smart监听接口，以及该接口的默认实现(Smart适配器)
  * (1)判断的方法，就是遍历，获取父泛型接口和父泛型类，这里涉及到Type接口以及其子类，涉及到原始类型和泛型类型的问题，
  * 延伸出：泛型擦除，为什么会出现伪泛型，以及一些Type的术语定义等等
  * (2)同样为了判断是否支持，还涉及到代理，spring的aop代理，cglib代理等
  * 看了几个类就涉及这么多。。。
+ * 4. 缓存中的检索器持有一份不可变的监听器数组快照，beanName在构建快照时就解析成实例，
+ * 发布事件时只需遍历数组，不加锁也不访问bean工厂
+ * 5. 注册表是不可变的，每次增删都通过CAS发布一个新版本(generation)，不再清空整个缓存；
+ * 缓存项记录自己基于哪个版本构建，发现过期时由访问的线程单独重建这一个key，不阻塞其他发布线程
+ * 6. 注册表中按监听器声明的事件类型建立了索引，缓存未命中时只需要沿着事件类型的父类和接口查找候选监听器，
+ * 代价和事件类型的继承深度相关，而不是和监听器数量相关
+ * 7. 检索出的监听器按Ordered排序(数值小的先执行)，order相同的保持注册顺序
+ * 8. 可以设置父广播器，父级链上的监听器和自己的合并去重后一起缓存，父级变化时只让它下面的子广播器的缓存过期
+ * 9. 可以设置EventDispatchInstrumentation统计发布次数、缓存命中和监听器耗时，不设置时只多一次null判断
+ * 10. 可以通过register方法注册监听器并拿到句柄，支持弱引用注册；移除单个监听器时，基于上一个版本的缓存项直接升级，
+ * 只有包含该监听器的缓存项去掉它，其他的原样沿用，不需要重建
  */
 public abstract class AbstractApplicationEventMulticaster
         implements ApplicationEventMulticaster, BeanClassLoaderAware, BeanFactoryAware {
 
     /**
-     * 默认的检索者，储存着所需的所有监听器和beanName，它通过直接调用add相关方法添加
+     * 当前版本的注册表，储存着所需的所有监听器和beanName，它通过直接调用add相关方法添加
      * 同时也是缓存中数据的来源
      */
-    private final ListenerRetriever defaultRetriever = new ListenerRetriever(false);
+    private final AtomicReference<ListenerRegistry> registry =
+            new AtomicReference<>(ListenerRegistry.EMPTY);
 
     //retriever缓存
     private final Map<ListenerCacheKey, ListenerRetriever> retrieverCache =
             new ConcurrentHashMap<>();
 
+    //监听器实例 -> 适配器，避免每次判断都新建适配器重新解析泛型；移除监听器时一起移除
+    private final Map<ApplicationListener, SmartApplicationListener> listenerAdapterCache =
+            new ConcurrentHashMap<>();
+
     private ClassLoader beanClassLoader;
 
     private BeanFactory beanFactory;
 
-    //以默认检索作为互斥变量，保护该容器的添加操作
-    private Object retrievalMutex = this.defaultRetriever;
+    //埋点，默认没有
+    private volatile EventDispatchInstrumentation instrumentation;
+
+    //父广播器，设置后发布事件时使用整条链上的监听器
+    private volatile AbstractApplicationEventMulticaster parent;
+
+    //子广播器，弱引用；父级变化时通知它们的链缓存过期
+    private final Set<AbstractApplicationEventMulticaster> children =
+            Collections.newSetFromMap(new WeakHashMap<AbstractApplicationEventMulticaster, Boolean>());
+
+    //链缓存的版本：自己或任何一个祖先的注册表变化，或者父广播器变化时增加
+    private final AtomicLong chainVersion = new AtomicLong();
+
+    //整条链合并后的监听器缓存，只有设置了父广播器时才使用
+    private final Map<ListenerCacheKey, ListenerRetriever> chainRetrieverCache =
+            new ConcurrentHashMap<>();
+
+    //弱引用注册的监听器被回收后进入这个队列，注册和发布时顺便清理
+    private final ReferenceQueue<ApplicationListener> staleListenerQueue = new ReferenceQueue<ApplicationListener>();
+
+    //交给分发器的回调，最终还是调用invokeListener
+    private final ApplicationListenerInvoker listenerInvoker = new ApplicationListenerInvoker() {
+        public void invokeListener(ApplicationListener listener, ApplicationEvent event) {
+            AbstractApplicationEventMulticaster.this.invokeListener(listener, event);
+        }
+    };
 
     public void setBeanClassLoader(ClassLoader classLoader) {
         this.beanClassLoader = classLoader;
@@ -56,6 +105,88 @@ public abstract class AbstractApplicationEventMulticaster
         //...其他
     }
 
+    /**
+     * 设置埋点，设置时会把getPendingEventCount()绑定为队列深度的来源；传null关闭埋点
+     * @see SimpleEventDispatchMetrics
+     */
+    public void setInstrumentation(EventDispatchInstrumentation instrumentation) {
+        this.instrumentation = instrumentation;
+        if (instrumentation != null) {
+            instrumentation.bindQueueDepth(new LongSupplier() {
+                public long getAsLong() {
+                    return getPendingEventCount();
+                }
+            });
+        }
+    }
+
+    public EventDispatchInstrumentation getInstrumentation() {
+        return this.instrumentation;
+    }
+
+    /**
+     * 异步执行时还未处理的事件(或任务)数，同步执行的话始终是0，由子类根据自己的执行方式覆盖
+     */
+    protected long getPendingEventCount() {
+        return 0;
+    }
+
+    //注册表每发布一个新版本，旧的缓存项就全部过期，自己和所有子广播器的链缓存也一起过期
+    private void registryChanged() {
+        EventDispatchInstrumentation instrumentation = this.instrumentation;
+        if (instrumentation != null) {
+            instrumentation.retrieverCacheInvalidated();
+        }
+        invalidateChain();
+    }
+
+    /**
+     * 设置父广播器，发布事件时父广播器(以及它的父级)的监听器也会收到，合并去重后按链缓存：
+     * 1. 整条链的监听器都由当前广播器执行(同步，线程池或者分发器)，父广播器只提供监听器
+     * 2. 父级的监听器变化时，只有它下面的子广播器的链缓存过期，兄弟和上级不受影响
+     * 3. 父广播器对子广播器是弱引用，子容器不用了可以直接被回收
+     * @param parent 父广播器，null表示断开
+     */
+    public void setParent(AbstractApplicationEventMulticaster parent) {
+        for (AbstractApplicationEventMulticaster ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+            Assert.state(ancestor != this, "Cannot set parent: would create a cycle in the multicaster chain");
+        }
+        AbstractApplicationEventMulticaster oldParent = this.parent;
+        if (oldParent != null) {
+            synchronized (oldParent.children) {
+                oldParent.children.remove(this);
+            }
+        }
+        if (parent != null) {
+            synchronized (parent.children) {
+                parent.children.add(this);
+            }
+        }
+        this.parent = parent;
+        invalidateChain();
+    }
+
+    public AbstractApplicationEventMulticaster getParent() {
+        return this.parent;
+    }
+
+    /**
+     * 让自己和所有子孙广播器的链缓存过期，只是增加版本号，缓存项在下次访问时重建
+     */
+    private void invalidateChain() {
+        this.chainVersion.incrementAndGet();
+        AbstractApplicationEventMulticaster[] children;
+        synchronized (this.children) {
+            if (this.children.isEmpty()) {
+                return;
+            }
+            children = this.children.toArray(new AbstractApplicationEventMulticaster[this.children.size()]);
+        }
+        for (AbstractApplicationEventMulticaster child : children) {
+            child.invalidateChain();
+        }
+    }
+
     private BeanFactory getBeanFactory() {
         if (this.beanFactory == null) {
             throw new IllegalStateException("ApplicationEventMulticaster cannot retrieve listener beans " +
@@ -64,142 +195,463 @@ public abstract class AbstractApplicationEventMulticaster
         return this.beanFactory;
     }
 
+    /**
+     * 已经强引用注册过的话什么都不做；已经弱引用注册过的话把包装换成监听器本身，升级为强引用，
+     * 注册顺序不变，缓存项直接把包装替换掉
+     */
     @Override
     public void addApplicationListener(ApplicationListener listener) {
-        synchronized (this.retrievalMutex) {
-            this.defaultRetriever.applicationListeners.add(listener);
-            this.retrieverCache.clear(); //检索来源变了，缓存也就失效了
+        //索引用的事件类型，自己实现了判断逻辑的SmartApplicationListener没法建索引
+        Class<?> indexType = (listener instanceof SmartApplicationListener ? null :
+                GenericApplicationListenerAdapter.resolveDeclaredEventType(listener));
+        ListenerRegistry current;
+        ListenerRegistry next;
+        ApplicationListener weakRegistered;
+        do {
+            current = this.registry.get();
+            ApplicationListener registered = findRegisteredListener(current, listener);
+            if (registered == null) {
+                weakRegistered = null;
+                next = current.withListener(listener, indexType);
+            } else if (registered instanceof WeakListener) {
+                weakRegistered = registered;
+                next = current.withReplacedListener(registered, listener);
+            } else {
+                return;
+            }
+        } while (!this.registry.compareAndSet(current, next));
+        if (weakRegistered != null) {
+            patchRetrieverCache(current, next, weakRegistered, listener);
         }
+        registryChanged();
+    }
+
+    /**
+     * 注册监听器并返回句柄，句柄close时移除它；已经注册过的话返回的句柄对应原来的注册
+     */
+    public ApplicationListenerRegistration registerApplicationListener(ApplicationListener listener) {
+        Assert.notNull(listener, "ApplicationListener must not be null");
+        purgeStaleListeners();
+        addApplicationListener(listener);
+        ApplicationListener registered = findRegisteredListener(this.registry.get(), listener);
+        return new ListenerRegistrationHandle(registered != null ? registered : listener);
+    }
+
+    /**
+     * 以弱引用注册监听器并返回句柄：
+     * 1. 注册表，缓存快照和句柄都只持有一个弱引用包装，监听器没有其他引用时可以被回收，不会因为忘记移除而泄漏
+     * 2. 被回收的监听器在之后的注册或发布时从注册表中清理，只更新包含它的缓存项
+     * 3. 包装只出现在注册表和缓存中，发布时换成监听器本身，分发器，按监听器类型路由以及批量回调都和强引用注册一样
+     * 4. 已经注册过(包括强引用注册)的话返回的句柄对应原来的注册；
+     * 之后又通过addApplicationListener强引用注册同一个监听器时，弱引用注册升级为强引用，这个句柄随之失效
+     */
+    public ApplicationListenerRegistration registerWeakApplicationListener(ApplicationListener listener) {
+        Assert.notNull(listener, "ApplicationListener must not be null");
+        purgeStaleListeners();
+        WeakListener weakListener = null;
+        ListenerRegistry current;
+        do {
+            current = this.registry.get();
+            ApplicationListener registered = findRegisteredListener(current, listener);
+            if (registered != null) {
+                return new ListenerRegistrationHandle(registered);
+            }
+            if (weakListener == null) {
+                weakListener = new WeakListener(listener, this.staleListenerQueue);
+            }
+        } while (!this.registry.compareAndSet(current, current.withListener(weakListener, weakListener.indexType)));
+        registryChanged();
+        return new ListenerRegistrationHandle(weakListener);
     }
 
     @Override
     public void addApplicationListenerBean(String listenerBeanName) {
-        synchronized (this.retrievalMutex) {
-            this.defaultRetriever.applicationListenerBeans.add(listenerBeanName);
-            this.retrieverCache.clear();
-        }
+        ListenerRegistry current;
+        do {
+            current = this.registry.get();
+            if (current.containsListenerBean(listenerBeanName)) {
+                return;
+            }
+        } while (!this.registry.compareAndSet(current, current.withListenerBean(listenerBeanName)));
+        registryChanged();
     }
 
+    //弱引用注册的也一起移除
     @Override
     public void removeApplicationListener(ApplicationListener listener) {
-        synchronized (this.retrievalMutex) {
-            this.defaultRetriever.applicationListeners.remove(listener);
-            this.retrieverCache.clear();
+        ApplicationListener registered = findRegisteredListener(this.registry.get(), listener);
+        if (registered != null) {
+            removeRegisteredListener(registered);
         }
     }
 
+    /**
+     * 从注册表中移除一个监听器(可能是弱引用包装)，并把上一个版本的缓存项直接升级到新版本
+     * @return 是否真的移除了，已经不在注册表中时返回false
+     */
+    private boolean removeRegisteredListener(ApplicationListener registered) {
+        ListenerRegistry current;
+        ListenerRegistry next;
+        do {
+            current = this.registry.get();
+            if (!current.containsListener(registered)) {
+                return false;
+            }
+            next = current.withoutListener(registered);
+        } while (!this.registry.compareAndSet(current, next));
+        //先更新自己的缓存，子广播器重建链缓存时就能直接用
+        patchRetrieverCache(current, next, registered, null);
+        registryChanged();
+        this.listenerAdapterCache.remove(registered);
+        return true;
+    }
+
+    /**
+     * 移除(或者替换)一个监听器后，注册表只差这一个监听器，所以基于上一个版本(previous)构建的缓存项可以直接升级：
+     * 不包含它的原样沿用，包含它的去掉它(或者在原来的位置换成replacement)；更早版本的缓存项不处理，仍然在访问时重建；
+     * 替换都是条件替换，和并发重建的线程冲突时以对方为准
+     * @param replacement 替换removed的监听器，null表示只是移除
+     */
+    private void patchRetrieverCache(ListenerRegistry previous, ListenerRegistry current, ApplicationListener removed,
+                                     ApplicationListener replacement) {
+        //同一个实例也可能通过beanName注册，这时不能确定去掉它是否正确，交给重建；原位替换不受影响
+        boolean removable = (replacement != null || current.listenerBeans.length == 0);
+        for (Map.Entry<ListenerCacheKey, ListenerRetriever> entry : this.retrieverCache.entrySet()) {
+            ListenerRetriever retriever = entry.getValue();
+            if (retriever.generation != previous.generation) {
+                continue;
+            }
+            ApplicationListener[] snapshot = retriever.listenerSnapshot;
+            if (ListenerRegistry.indexOf(snapshot, removed) == -1) {
+                this.retrieverCache.replace(entry.getKey(), retriever,
+                        new ListenerRetriever(current.generation, snapshot));
+            } else if (removable) {
+                ApplicationListener[] patched = (replacement != null ?
+                        ListenerRegistry.replace(snapshot, removed, replacement) :
+                        ListenerRegistry.remove(snapshot, removed));
+                this.retrieverCache.replace(entry.getKey(), retriever,
+                        new ListenerRetriever(current.generation, patched));
+            }
+        }
+    }
+
+    /**
+     * 清理已经被回收的弱引用监听器，每个只是一次普通的移除
+     */
+    private void purgeStaleListeners() {
+        Reference<? extends ApplicationListener> stale;
+        while ((stale = this.staleListenerQueue.poll()) != null) {
+            removeRegisteredListener((WeakListener) stale);
+        }
+    }
+
+    //注册表中对应该监听器的那一项：监听器本身，或者引用它的弱引用包装
+    private static ApplicationListener findRegisteredListener(ListenerRegistry registry, ApplicationListener listener) {
+        for (ApplicationListener registered : registry.listeners) {
+            if (ObjectUtils.nullSafeEquals(registered, listener) ||
+                    (registered instanceof WeakListener && ((WeakListener) registered).get() == listener)) {
+                return registered;
+            }
+        }
+        return null;
+    }
+
     @Override
     public void removeApplicationListenerBean(String listenerBeanName) {
-        synchronized (this.retrievalMutex) {
-            this.defaultRetriever.applicationListenerBeans.remove(listenerBeanName);
-            this.retrieverCache.clear();
-        }
+        ListenerRegistry current;
+        do {
+            current = this.registry.get();
+            if (!current.containsListenerBean(listenerBeanName)) {
+                return;
+            }
+        } while (!this.registry.compareAndSet(current, current.withoutListenerBean(listenerBeanName)));
+        registryChanged();
     }
 
     @Override
     public void removeAllListeners() {
-        synchronized (this.retrievalMutex) {
-            this.defaultRetriever.applicationListeners.clear();
-            this.defaultRetriever.applicationListenerBeans.clear();
-            this.retrieverCache.clear();
-        }
+        ListenerRegistry current;
+        do {
+            current = this.registry.get();
+        } while (!this.registry.compareAndSet(current, current.cleared()));
+        registryChanged();
+        //全部移除时缓存项都没用了，直接清掉，顺便释放对旧监听器的引用
+        this.retrieverCache.clear();
+        this.chainRetrieverCache.clear();
+        this.listenerAdapterCache.clear();
     }
 
     protected Collection<ApplicationListener> getApplicationListeners(){
-        synchronized (retrievalMutex){ //防止变化
-            return this.defaultRetriever.getApplicationListeners();
+        ListenerRegistry current = this.registry.get(); //注册表不可变，拿到的就是一致的版本
+        LinkedList<ApplicationListener> allListeners = new LinkedList<ApplicationListener>();
+        //先将储存的全部放进去
+        Collections.addAll(allListeners, current.listeners);
+        //获取bean工厂，遍历beanName，拿到bean
+        for (String listenerBeanName : current.listenerBeans) {
+            ApplicationListener listener = getBeanFactory().getBean(listenerBeanName, ApplicationListener.class);
+            if (!allListeners.contains(listener)) {
+                allListeners.add(listener);
+            }
         }
+        return allListeners;
     }
 
     /**
      * 首先这是一个protected方法，说明这是可以给子类内部共享但是不能给外人使用的
      * 其次，该方法作用就是根据给定的event类型以及event中的事件源类型，获得对应的监听器；
-     * 那么是如何获得？
+     * 那么是如何获得？见getApplicationListenerArray，这里只是包装成只读集合
      */
     protected Collection<ApplicationListener> getApplicationListeners(ApplicationEvent event){
+        return Collections.unmodifiableList(Arrays.asList(getApplicationListenerArray(event)));
+    }
+
+    /**
+     * 返回支持该事件的监听器快照，命中缓存时直接返回缓存中的数组，不加锁也不分配新集合；
+     * 返回的数组是共享的，调用方只能读不能改；弱引用注册的监听器在这里换成监听器本身
+     */
+    protected ApplicationListener[] getApplicationListenerArray(ApplicationEvent event){
+        purgeStaleListeners();
         //1.获取事件类型和事件源类型，并创建缓存key
-        Class<? extends ApplicationEvent> eventType = event.getClass();
-        Object source = event.getSource();
-        Class<?> sourceType = (source != null ? source.getClass() : null);
-        ListenerCacheKey cacheKey = new ListenerCacheKey(eventType, sourceType);
+        return resolveWeakListeners(getApplicationListenerArray(ListenerCacheKey.forEvent(event)));
+    }
+
+    /**
+     * 缓存中保存的是弱引用包装，这样缓存不会让监听器无法回收；交给分发器之前换成监听器本身，
+     * 分发器，路由，保护，埋点和BatchApplicationListener的判断看到的都是真正的监听器；
+     * 已经被回收的直接去掉，没有弱引用监听器时原样返回共享的数组
+     */
+    private static ApplicationListener[] resolveWeakListeners(ApplicationListener[] snapshot) {
+        int first = -1;
+        for (int i = 0; i < snapshot.length; i++) {
+            if (snapshot[i] instanceof WeakListener) {
+                first = i;
+                break;
+            }
+        }
+        if (first == -1) {
+            return snapshot;
+        }
+        //同一个监听器可能在链上(或者通过beanName)既有强引用又有弱引用的注册，按identity只保留第一个
+        Set<ApplicationListener> seen =
+                Collections.newSetFromMap(new IdentityHashMap<ApplicationListener, Boolean>(snapshot.length));
+        ApplicationListener[] resolved = new ApplicationListener[snapshot.length];
+        int count = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            ApplicationListener listener = (i >= first && snapshot[i] instanceof WeakListener ?
+                    ((WeakListener) snapshot[i]).get() : snapshot[i]);
+            if (listener != null && seen.add(listener)) {
+                resolved[count++] = listener;
+            }
+        }
+        return (count == resolved.length ? resolved : Arrays.copyOf(resolved, count));
+    }
+
+    /**
+     * 没有父广播器时只检索自己的监听器；有父广播器时返回整条链合并去重后的监听器，同样按版本缓存
+     */
+    private ApplicationListener[] getApplicationListenerArray(ListenerCacheKey cacheKey){
+        AbstractApplicationEventMulticaster parent = this.parent;
+        if (parent == null) {
+            return getLocalListenerArray(cacheKey, this.instrumentation);
+        }
+        //先读版本再检索，检索期间链上有变化的话，存进去的就是旧版本，下次访问会重建
+        long version = this.chainVersion.get();
+        ListenerRetriever retriever = this.chainRetrieverCache.get(cacheKey);
+        EventDispatchInstrumentation instrumentation = this.instrumentation;
+        if (retriever != null && retriever.generation == version) {
+            if (instrumentation != null) {
+                instrumentation.retrieverCacheHit();
+            }
+            return retriever.listenerSnapshot;
+        }
+        if (instrumentation != null) {
+            instrumentation.retrieverCacheMiss();
+        }
+        //自己这一层的缓存仍然有效的话直接用，父广播器的结果来自它自己的链缓存
+        ApplicationListener[] merged = mergeListeners(
+                getLocalListenerArray(cacheKey, null), parent.getApplicationListenerArray(cacheKey));
+        if (isCacheSafe(cacheKey)) {
+            ListenerRetriever newRetriever = new ListenerRetriever(version, merged);
+            if (retriever == null) {
+                this.chainRetrieverCache.putIfAbsent(cacheKey, newRetriever);
+            } else if (retriever.generation < version) {
+                this.chainRetrieverCache.replace(cacheKey, retriever, newRetriever);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 合并自己和父广播器链上的监听器：自己的在前，父级中已经出现过的不再重复；
+     * 合并后再按Ordered整体排序，稳定排序，order相同(包括都没有实现Ordered)的保持先子后父的顺序
+     */
+    private static ApplicationListener[] mergeListeners(ApplicationListener[] local, ApplicationListener[] inherited) {
+        if (inherited.length == 0) {
+            return local;
+        }
+        if (local.length == 0) {
+            return inherited;
+        }
+        Set<ApplicationListener> merged = new LinkedHashSet<ApplicationListener>(local.length + inherited.length);
+        Collections.addAll(merged, local);
+        Collections.addAll(merged, inherited);
+        ApplicationListener[] result = merged.toArray(new ApplicationListener[merged.size()]);
+        OrderComparator.sort(result);
+        return result;
+    }
+
+    private boolean isCacheSafe(ListenerCacheKey cacheKey) {
+        return (this.beanClassLoader == null ||
+                (ClassUtils.isCacheSafe(cacheKey.eventType, this.beanClassLoader) &&
+                        (cacheKey.sourceType == null || ClassUtils.isCacheSafe(cacheKey.sourceType, this.beanClassLoader))));
+    }
 
-        //z. 直接去缓存中找，源码注释称为快速确认，该过程不需要同步，所以称为快速
+    /**
+     * 只检索自己注册的监听器
+     * @param instrumentation 记录缓存命中的埋点，作为链的一部分检索时传null，由链缓存自己记录
+     */
+    private ApplicationListener[] getLocalListenerArray(ListenerCacheKey cacheKey,
+                                                        EventDispatchInstrumentation instrumentation){
+        Class<? extends ApplicationEvent> eventType = cacheKey.eventType;
+        Class<?> sourceType = cacheKey.sourceType;
+
+        //z. 直接去缓存中找，源码注释称为快速确认，版本一致就直接用
+        ListenerRegistry current = this.registry.get();
         ListenerRetriever retriever = retrieverCache.get(cacheKey);
-        if(retriever!=null){
-            return retriever.getApplicationListeners();
+        if(retriever != null && retriever.generation == current.generation){
+            if (instrumentation != null) {
+                instrumentation.retrieverCacheHit();
+            }
+            return retriever.listenerSnapshot;
+        }
+        if (instrumentation != null) {
+            instrumentation.retrieverCacheMiss();
         }
 
         //因为不是通过beanClassLoader加载所以就不需要缓存？为啥
-        if(beanClassLoader == null
-                || (ClassUtils.isCacheSafe(eventType, beanClassLoader) &&
-                    (sourceType == null || ClassUtils.isCacheSafe(sourceType, this.beanClassLoader)))){
-            //同步构建并缓存ListenerRetriever
-            synchronized (retrievalMutex){
-                //再次同步获取
-                retriever = retrieverCache.get(cacheKey);
-                if(retriever!=null){
-                    return retriever.getApplicationListeners();
-                }
-                retriever = new ListenerRetriever(true);
-                //去默认检索器中检索监听器
-                Collection<ApplicationListener> listeners =
-                        retrieveApplicationListeners(eventType, sourceType, retriever);
-                //放入缓存
-                this.retrieverCache.put(cacheKey, retriever);
-                return listeners;
+        if(isCacheSafe(cacheKey)){
+            //缓存不存在或者已过期：只重建这一个key，不加锁，多个线程同时重建也只是重复计算
+            ListenerRetriever newRetriever = new ListenerRetriever(
+                    current.generation, retrieveApplicationListeners(current, eventType, sourceType));
+            //只替换自己看到的那个旧值，如果别的线程已经换过了就以别人的为准，不会用旧版本覆盖新版本
+            if (retriever == null) {
+                this.retrieverCache.putIfAbsent(cacheKey, newRetriever);
+            } else if (retriever.generation < current.generation) {
+                this.retrieverCache.replace(cacheKey, retriever, newRetriever);
             }
+            return newRetriever.listenerSnapshot;
         }else {
             //不需要缓存，直接检索
-            return retrieveApplicationListeners(eventType, sourceType, null);
+            return retrieveApplicationListeners(current, eventType, sourceType);
+        }
+    }
+
+    /**
+     * 批量发布：
+     * 1. 先按缓存key(事件类型+事件源类型)分组，同一组的事件只检索一次监听器
+     * 2. 分组保持第一次出现的顺序，组内保持原来的顺序；不同组之间的相对顺序不保证和原来一致
+     * 3. 每一组交给multicastEventGroup，由子类决定怎么调用
+     */
+    @Override
+    public void multicastEvents(Collection<? extends ApplicationEvent> events) {
+        purgeStaleListeners();
+        Map<ListenerCacheKey, List<ApplicationEvent>> groups =
+                new LinkedHashMap<ListenerCacheKey, List<ApplicationEvent>>();
+        EventDispatchInstrumentation instrumentation = this.instrumentation;
+        for (ApplicationEvent event : events) {
+            if (instrumentation != null) {
+                instrumentation.eventPublished(event);
+            }
+            ListenerCacheKey cacheKey = ListenerCacheKey.forEvent(event);
+            List<ApplicationEvent> group = groups.get(cacheKey);
+            if (group == null) {
+                group = new ArrayList<ApplicationEvent>();
+                groups.put(cacheKey, group);
+            }
+            group.add(event);
+        }
+        for (Map.Entry<ListenerCacheKey, List<ApplicationEvent>> entry : groups.entrySet()) {
+            ApplicationListener[] listeners = resolveWeakListeners(getApplicationListenerArray(entry.getKey()));
+            if (listeners.length > 0) {
+                multicastEventGroup(entry.getValue(), listeners);
+            }
         }
     }
 
     /**
-     * 真正检索操作，通过给定事件类型和事件源类型来检索，返回符合条件的所有监听器，若有传入储存的检索器，则添加用于缓存
+     * 将同一组事件(事件类型和事件源类型都相同)发布给已经检索好的监听器
+     * @param events 同一组的事件，按发布顺序排列
+     * @param listeners 支持这组事件的监听器快照，只读
+     */
+    protected abstract void multicastEventGroup(List<ApplicationEvent> events, ApplicationListener[] listeners);
+
+    /**
+     * 调用单个监听器，所有执行方式最后都会走到这里；设置了埋点时在这里计时
+     */
+    protected void invokeListener(ApplicationListener listener, ApplicationEvent event) {
+        EventDispatchInstrumentation instrumentation = getInstrumentation();
+        if (instrumentation == null) {
+            listener.onApplicationEvent(event);
+            return;
+        }
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            listener.onApplicationEvent(event);
+        } catch (RuntimeException ex) {
+            failure = ex;
+            throw ex;
+        } catch (Error err) {
+            failure = err;
+            throw err;
+        } finally {
+            instrumentation.listenerInvoked(listener, event, System.nanoTime() - start, failure);
+        }
+    }
+
+    /**
+     * 调用invokeListener的回调，交给分发器或者子类自己的执行机制使用
+     */
+    protected ApplicationListenerInvoker getListenerInvoker() {
+        return this.listenerInvoker;
+    }
+
+    /**
+     * 真正检索操作，通过给定事件类型和事件源类型来检索，返回符合条件的所有监听器；
+     * beanName对应的监听器在这里就解析成实例，所以快照中不再保留beanName；
+     * 直接注册的监听器先通过类型索引缩小范围，候选的监听器仍然要经过supportsEvent判断(例如事件源类型)
+     * @param registry 检索数据来源，不可变，所以不需要再copy一份
      * @param eventType 事件类型
      * @param sourceType 事件源类型
-     * @param retriever 如果想要缓存检索结果，传入
-     * @return
+     * @return 符合条件的监听器数组，之后不会再被修改
      */
-    private Collection<ApplicationListener> retrieveApplicationListeners(
-            Class<? extends ApplicationEvent> eventType, Class<?> sourceType, ListenerRetriever retriever){
+    private ApplicationListener[] retrieveApplicationListeners(ListenerRegistry registry,
+            Class<? extends ApplicationEvent> eventType, Class<?> sourceType){
         //储存检索结构
         LinkedList<ApplicationListener> allListeners = new LinkedList<>();
 
-        //同步获取检索数据来源，copy一份
-        Set<ApplicationListener> listeners;
-        Set<String> listenerBeans;
-        synchronized (retrievalMutex){
-            listeners = new LinkedHashSet<>(defaultRetriever.applicationListeners);
-            listenerBeans = new LinkedHashSet<>(defaultRetriever.applicationListenerBeans);
-        }
-
         //检索支持事件类型的监听器
-        for(ApplicationListener listener : listeners){
-            if(supportsEvent(listener, eventType, sourceType)){
-                if(retriever != null){
-                    allListeners.add(listener);
-                }
-                allListeners.add(listener);
+        for(ListenerEntry entry : registry.getCandidates(eventType)){
+            if(supportsEvent(entry.listener, eventType, sourceType)){
+                allListeners.add(entry.listener);
             }
         }
 
         //根据监听器bean name，检索支持事件类型的监听器
-        if(!listenerBeans.isEmpty()){
+        if(registry.listenerBeans.length > 0){
             BeanFactory beanFactory = getBeanFactory();
-            for(String listenerBeanName : listenerBeans){
+            for(String listenerBeanName : registry.listenerBeans){
                 ApplicationListener listener = beanFactory.getBean(listenerBeanName, ApplicationListener.class);
                 //不包含且支持
                 if(!allListeners.contains(listener) && supportsEvent(listener, eventType, sourceType)){
-                    if (retriever != null) {
-                        retriever.applicationListenerBeans.add(listenerBeanName);
-                    }
                     allListeners.add(listener);
                 }
             }
         }
 
-        return allListeners;
+        //按Ordered排序，稳定排序，没有实现Ordered的保持注册顺序排在最后
+        OrderComparator.sort(allListeners);
+        return allListeners.toArray(new ApplicationListener[allListeners.size()]);
     }
 
     /**
@@ -207,7 +659,7 @@ public abstract class AbstractApplicationEventMulticaster
      * 1. 默认情况下，查看是否实现了martApplicationListener接口；
      * 2. 如果是实现标准接口的，则使用通用(generic)监听适配器GenericApplicationListenerAdapter来检测；
      * 检测的职责是是可以自己实现(spring提供了接口)，而且就算没有默认实现也提供了一个叫做适配器的东西，适配检测
-     * 这个适配器：提供了默认的检测方法；
+     * 这个适配器：提供了默认的检测方法；适配器按监听器实例缓存，只在第一次判断时创建
      * @param listener 要检查的对象
      * @param eventType 要检查的事件类型
      * @param sourceType 要检查的事件源
@@ -216,10 +668,22 @@ public abstract class AbstractApplicationEventMulticaster
     protected boolean supportsEvent(
             ApplicationListener listener, Class<? extends ApplicationEvent> eventType, Class<?> sourceType){
         SmartApplicationListener smartListener = (listener instanceof SmartApplicationListener) ?
-                (SmartApplicationListener) listener : new GenericApplicationListenerAdapter(listener);
+                (SmartApplicationListener) listener : getListenerAdapter(listener);
         return smartListener.supportsEventType(eventType) && smartListener.supportsSourceType(sourceType);
     }
 
+    private SmartApplicationListener getListenerAdapter(ApplicationListener listener) {
+        SmartApplicationListener adapter = this.listenerAdapterCache.get(listener);
+        if (adapter == null) {
+            adapter = new GenericApplicationListenerAdapter(listener);
+            SmartApplicationListener existing = this.listenerAdapterCache.putIfAbsent(listener, adapter);
+            if (existing != null) {
+                adapter = existing;
+            }
+        }
+        return adapter;
+    }
+
     /**
      * 静态内部类和非静态内部类使用场景，感觉这个解释还是不妥：
      * https://www.jianshu.com/p/c2c54664d4c9
@@ -231,15 +695,20 @@ public abstract class AbstractApplicationEventMulticaster
      * 基于事件类型，事件源的ListenerRetriever缓存key
      */
     private static class ListenerCacheKey{
-        private final Class<?> eventType;
+        private final Class<? extends ApplicationEvent> eventType;
 
         private final Class<?> sourceType;
 
-        public ListenerCacheKey(Class<?> eventType, Class<?> sourceType){
+        public ListenerCacheKey(Class<? extends ApplicationEvent> eventType, Class<?> sourceType){
             this.eventType = eventType;
             this.sourceType = sourceType;
         }
 
+        public static ListenerCacheKey forEvent(ApplicationEvent event) {
+            Object source = event.getSource();
+            return new ListenerCacheKey(event.getClass(), (source != null ? source.getClass() : null));
+        }
+
         @Override
         public boolean equals(Object other) {
             if (this == other) {
@@ -263,41 +732,319 @@ public abstract class AbstractApplicationEventMulticaster
      * 1. 这是一个事件监听管理器的帮助类，所以是private
      * 2. 每个特定的事件类型 (ApplicationEvent的class类型) 和
      * 事件源 (该事件下的事件源) 都对应一个helper实例
+     * 3. 不可变，记录了构建时注册表的版本，版本对不上就说明过期了，需要整体替换
      */
-    private class ListenerRetriever {
-        public final Set<ApplicationListener> applicationListeners;
+    private static class ListenerRetriever {
+        //构建该快照时注册表的版本
+        public final long generation;
 
-        public final Set<String> applicationListenerBeans;
+        //预先过滤好的监听器快照，构建后不再修改
+        public final ApplicationListener[] listenerSnapshot;
 
-        //private final boolean preFiltered; //不理解这个有啥用
-
-        public ListenerRetriever(boolean preFiltered){
-            this.applicationListeners = new HashSet<ApplicationListener>();
-            this.applicationListenerBeans = new HashSet<String>();
-            //this.preFiltered = preFiltered;
+        public ListenerRetriever(long generation, ApplicationListener[] listenerSnapshot){
+            this.generation = generation;
+            this.listenerSnapshot = listenerSnapshot;
         }
+    }
 
-        public Collection<ApplicationListener> getApplicationListeners(){
-            LinkedList<ApplicationListener> allListeners = new LinkedList<ApplicationListener>();
-            //先将储存的全部放进去
-            for(ApplicationListener listener : allListeners){
-                allListeners.add(listener);
+
+    /**
+     * 不可变的监听器注册表，代替原来的默认检索器+互斥变量：
+     * 1. 每次修改都返回一个新实例，版本号加一，旧实例不受影响，读的线程拿到哪个版本就用哪个版本
+     * 2. 监听器数量不多，而且注册远没有发布频繁，所以每次copy数组的代价可以接受
+     * 3. typeIndex：声明的事件类型 -> 监听器，每次增删只copy受影响的那一个桶；
+     * 无法确定事件类型的SmartApplicationListener放在unindexed中，每次都作为候选
+     */
+    private static final class ListenerRegistry {
+
+        private static final ListenerEntry[] NO_ENTRIES = new ListenerEntry[0];
+
+        static final ListenerRegistry EMPTY = new ListenerRegistry(0L, 0L, new ApplicationListener[0], NO_ENTRIES,
+                new String[0], Collections.<Class<?>, ListenerEntry[]>emptyMap(), NO_ENTRIES);
+
+        //按注册顺序排列候选监听器
+        private static final Comparator<ListenerEntry> SEQUENCE_ORDER = new Comparator<ListenerEntry>() {
+            public int compare(ListenerEntry e1, ListenerEntry e2) {
+                return (e1.sequence < e2.sequence ? -1 : (e1.sequence == e2.sequence ? 0 : 1));
             }
-            if(!applicationListenerBeans.isEmpty()){
-                //获取bean工厂，遍历缓存的beanName，拿到bean
-                for(String listenerBeanName : this.applicationListenerBeans){
-                    ApplicationListener listener = beanFactory.getBean(listenerBeanName, ApplicationListener.class);
-//                    if (this.preFiltered || !allListeners.contains(listener)) {
-//                        allListeners.add(listener);
-//                    }
-                    //这里不知道这个有什么用，如果preFiltered=true，表示不需要预先处理，false表示要处理，
-                    //怎么想感觉都很奇怪
-                    if (!allListeners.contains(listener)) {
-                        allListeners.add(listener);
+        };
+
+        final long generation;
+
+        //下一个注册的监听器的序号
+        final long nextSequence;
+
+        //按注册顺序保存，没有重复
+        final ApplicationListener[] listeners;
+
+        //和listeners一一对应
+        final ListenerEntry[] entries;
+
+        final String[] listenerBeans;
+
+        final Map<Class<?>, ListenerEntry[]> typeIndex;
+
+        final ListenerEntry[] unindexed;
+
+        ListenerRegistry(long generation, long nextSequence, ApplicationListener[] listeners, ListenerEntry[] entries,
+                         String[] listenerBeans, Map<Class<?>, ListenerEntry[]> typeIndex, ListenerEntry[] unindexed) {
+            this.generation = generation;
+            this.nextSequence = nextSequence;
+            this.listeners = listeners;
+            this.entries = entries;
+            this.listenerBeans = listenerBeans;
+            this.typeIndex = typeIndex;
+            this.unindexed = unindexed;
+        }
+
+        boolean containsListener(ApplicationListener listener) {
+            return indexOf(this.listeners, listener) != -1;
+        }
+
+        boolean containsListenerBean(String listenerBeanName) {
+            return indexOf(this.listenerBeans, listenerBeanName) != -1;
+        }
+
+        /**
+         * 沿着事件类型的父类和接口找出候选监听器，按注册顺序返回
+         */
+        List<ListenerEntry> getCandidates(Class<?> eventType) {
+            List<ListenerEntry> candidates = new ArrayList<ListenerEntry>();
+            Collections.addAll(candidates, this.unindexed);
+            int buckets = (this.unindexed.length > 0 ? 1 : 0);
+            if (!this.typeIndex.isEmpty()) {
+                Set<Class<?>> visited = new HashSet<Class<?>>();
+                Deque<Class<?>> toVisit = new ArrayDeque<Class<?>>();
+                toVisit.add(eventType);
+                while (!toVisit.isEmpty()) {
+                    Class<?> type = toVisit.poll();
+                    if (!visited.add(type)) {
+                        continue;
                     }
+                    ListenerEntry[] bucket = this.typeIndex.get(type);
+                    if (bucket != null) {
+                        Collections.addAll(candidates, bucket);
+                        buckets++;
+                    }
+                    if (type.getSuperclass() != null) {
+                        toVisit.add(type.getSuperclass());
+                    }
+                    Collections.addAll(toVisit, type.getInterfaces());
+                }
+            }
+            //只有一个桶时本身就是按注册顺序的，不用排序
+            if (buckets > 1) {
+                Collections.sort(candidates, SEQUENCE_ORDER);
+            }
+            return candidates;
+        }
+
+        ListenerRegistry withListener(ApplicationListener listener, Class<?> indexType) {
+            ListenerEntry entry = new ListenerEntry(listener, indexType, this.nextSequence);
+            Map<Class<?>, ListenerEntry[]> typeIndex = this.typeIndex;
+            ListenerEntry[] unindexed = this.unindexed;
+            if (indexType != null) {
+                typeIndex = new HashMap<Class<?>, ListenerEntry[]>(this.typeIndex);
+                ListenerEntry[] bucket = typeIndex.get(indexType);
+                typeIndex.put(indexType, append(bucket != null ? bucket : NO_ENTRIES, entry));
+            } else {
+                unindexed = append(unindexed, entry);
+            }
+            return new ListenerRegistry(this.generation + 1, this.nextSequence + 1, append(this.listeners, listener),
+                    append(this.entries, entry), this.listenerBeans, typeIndex, unindexed);
+        }
+
+        ListenerRegistry withListenerBean(String listenerBeanName) {
+            return new ListenerRegistry(this.generation + 1, this.nextSequence, this.listeners, this.entries,
+                    append(this.listenerBeans, listenerBeanName), this.typeIndex, this.unindexed);
+        }
+
+        ListenerRegistry withoutListener(ApplicationListener listener) {
+            int index = indexOf(this.listeners, listener);
+            ListenerEntry entry = this.entries[index];
+            Map<Class<?>, ListenerEntry[]> typeIndex = this.typeIndex;
+            ListenerEntry[] unindexed = this.unindexed;
+            if (entry.indexType != null) {
+                typeIndex = new HashMap<Class<?>, ListenerEntry[]>(this.typeIndex);
+                ListenerEntry[] bucket = remove(typeIndex.get(entry.indexType), entry);
+                if (bucket.length > 0) {
+                    typeIndex.put(entry.indexType, bucket);
+                } else {
+                    typeIndex.remove(entry.indexType);
+                }
+            } else {
+                unindexed = remove(unindexed, entry);
+            }
+            return new ListenerRegistry(this.generation + 1, this.nextSequence, remove(this.listeners, listener),
+                    remove(this.entries, entry), this.listenerBeans, typeIndex, unindexed);
+        }
+
+        /**
+         * 把existing换成replacement，注册序号和索引类型都不变(弱引用包装的索引类型和监听器本身一样)
+         */
+        ListenerRegistry withReplacedListener(ApplicationListener existing, ApplicationListener replacement) {
+            int index = indexOf(this.listeners, existing);
+            ListenerEntry entry = this.entries[index];
+            ListenerEntry newEntry = new ListenerEntry(replacement, entry.indexType, entry.sequence);
+            Map<Class<?>, ListenerEntry[]> typeIndex = this.typeIndex;
+            ListenerEntry[] unindexed = this.unindexed;
+            if (entry.indexType != null) {
+                typeIndex = new HashMap<Class<?>, ListenerEntry[]>(this.typeIndex);
+                typeIndex.put(entry.indexType, replace(typeIndex.get(entry.indexType), entry, newEntry));
+            } else {
+                unindexed = replace(unindexed, entry, newEntry);
+            }
+            return new ListenerRegistry(this.generation + 1, this.nextSequence,
+                    replace(this.listeners, existing, replacement), replace(this.entries, entry, newEntry),
+                    this.listenerBeans, typeIndex, unindexed);
+        }
+
+        ListenerRegistry withoutListenerBean(String listenerBeanName) {
+            return new ListenerRegistry(this.generation + 1, this.nextSequence, this.listeners, this.entries,
+                    remove(this.listenerBeans, listenerBeanName), this.typeIndex, this.unindexed);
+        }
+
+        ListenerRegistry cleared() {
+            return new ListenerRegistry(this.generation + 1, this.nextSequence, EMPTY.listeners, EMPTY.entries,
+                    EMPTY.listenerBeans, EMPTY.typeIndex, EMPTY.unindexed);
+        }
+
+        private static int indexOf(Object[] array, Object element) {
+            for (int i = 0; i < array.length; i++) {
+                if (ObjectUtils.nullSafeEquals(array[i], element)) {
+                    return i;
                 }
             }
-            return allListeners;
+            return -1;
+        }
+
+        private static <T> T[] append(T[] array, T element) {
+            T[] result = Arrays.copyOf(array, array.length + 1);
+            result[array.length] = element;
+            return result;
+        }
+
+        private static <T> T[] replace(T[] array, T element, T replacement) {
+            T[] result = array.clone();
+            result[indexOf(array, element)] = replacement;
+            return result;
+        }
+
+        private static <T> T[] remove(T[] array, T element) {
+            int index = indexOf(array, element);
+            T[] result = Arrays.copyOf(array, array.length - 1);
+            System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+            return result;
+        }
+    }
+
+
+    /**
+     * 注册表中的一个监听器：所在的索引类型，以及注册序号(用来在合并多个桶时恢复注册顺序)
+     */
+    private static final class ListenerEntry {
+
+        final ApplicationListener listener;
+
+        //null表示没有建索引
+        final Class<?> indexType;
+
+        final long sequence;
+
+        ListenerEntry(ApplicationListener listener, Class<?> indexType, long sequence) {
+            this.listener = listener;
+            this.indexType = indexType;
+            this.sequence = sequence;
+        }
+    }
+
+
+    /**
+     * 弱引用注册的监听器的包装，本身就是WeakReference，被回收后进入staleListenerQueue：
+     * 1. 被包装的不是SmartApplicationListener时，声明的事件类型在构造时解析好，同时作为注册表的索引类型，
+     * 不需要再为包装创建适配器
+     * 2. 只保存在注册表和缓存的快照中，发布时由resolveWeakListeners换成监听器本身，不会交给分发器
+     * 3. 监听器被回收但还没清理时，不支持任何事件，调用也什么都不做
+     */
+    private static final class WeakListener extends WeakReference<ApplicationListener>
+            implements SmartApplicationListener {
+
+        //null表示被包装的是SmartApplicationListener，由它自己判断
+        final Class<?> indexType;
+
+        private final int order;
+
+        WeakListener(ApplicationListener listener, ReferenceQueue<ApplicationListener> queue) {
+            super(listener, queue);
+            this.indexType = (listener instanceof SmartApplicationListener ? null :
+                    GenericApplicationListenerAdapter.resolveDeclaredEventType(listener));
+            this.order = (listener instanceof Ordered ? ((Ordered) listener).getOrder() : Ordered.LOWEST_PRECEDENCE);
+        }
+
+        @Override
+        public void onApplicationEvent(ApplicationEvent event) {
+            ApplicationListener listener = get();
+            if (listener != null) {
+                listener.onApplicationEvent(event);
+            }
+        }
+
+        @Override
+        public boolean supportsEventType(Class<? extends ApplicationEvent> eventType) {
+            ApplicationListener listener = get();
+            if (listener == null) {
+                return false;
+            }
+            return (this.indexType != null ? this.indexType.isAssignableFrom(eventType) :
+                    ((SmartApplicationListener) listener).supportsEventType(eventType));
+        }
+
+        @Override
+        public boolean supportsSourceType(Class<?> sourceType) {
+            ApplicationListener listener = get();
+            if (listener == null) {
+                return false;
+            }
+            return (this.indexType != null || ((SmartApplicationListener) listener).supportsSourceType(sourceType));
+        }
+
+        @Override
+        public int getOrder() {
+            return this.order;
+        }
+    }
+
+
+    /**
+     * register方法返回的句柄，持有注册表中的那一项(弱引用注册时是包装)，close时移除它
+     */
+    private final class ListenerRegistrationHandle implements ApplicationListenerRegistration {
+
+        private final ApplicationListener registered;
+
+        private volatile boolean closed;
+
+        ListenerRegistrationHandle(ApplicationListener registered) {
+            this.registered = registered;
+        }
+
+        @Override
+        public ApplicationListener getListener() {
+            return (this.registered instanceof WeakListener ?
+                    ((WeakListener) this.registered).get() : this.registered);
+        }
+
+        @Override
+        public boolean isActive() {
+            return (!this.closed && getListener() != null && registry.get().containsListener(this.registered));
+        }
+
+        @Override
+        public void close() {
+            if (!this.closed) {
+                this.closed = true;
+                removeRegisteredListener(this.registered);
+            }
         }
     }
 }
@@ -0,0 +1,25 @@
+package org.springframework.context.event;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * 决定哪些事件可以合并，以及怎么合并，由CoalescingApplicationEventMulticaster使用
+ * @see CoalescingApplicationEventMulticaster#addCoalescer
+ */
+public interface ApplicationEventCoalescer {
+
+    /**
+     * 返回事件的合并key，同一事件类型下key相等(equals)的事件会被合并；
+     * 返回null表示这个事件不合并，直接发布
+     */
+    Object getCoalescingKey(ApplicationEvent event);
+
+    /**
+     * 合并两个事件，默认只保留新的；可能被多个线程同时调用，也可能因为并发重试而多次调用，不能有副作用
+     * @param previous 还没投递的事件(可能已经是合并过的)
+     * @param next 新发布的事件
+     */
+    default ApplicationEvent merge(ApplicationEvent previous, ApplicationEvent next) {
+        return next;
+    }
+}
@@ -0,0 +1,27 @@
+package org.springframework.context.event;
+
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+
+/**
+ * 事件分发策略，SimpleApplicationEventMulticaster检索出监听器后交给它来决定如何执行；
+ * 和直接设置一个Executor相比，分发器拿到的是整个监听器数组，不需要为每个监听器都创建一个Runnable
+ * @see SimpleApplicationEventMulticaster#setEventDispatcher
+ */
+public interface ApplicationEventDispatcher {
+
+    /**
+     * 将事件分发给监听器
+     * @param event 要分发的事件
+     * @param listeners 支持该事件的监听器快照，只读，不能修改
+     * @param invoker 调用单个监听器的回调
+     */
+    void dispatch(ApplicationEvent event, ApplicationListener[] listeners, ApplicationListenerInvoker invoker);
+
+    /**
+     * 已经交给分发器但还未处理的事件数，用于埋点中的队列深度；同步分发的实现不需要覆盖
+     */
+    default long getPendingEventCount() {
+        return 0;
+    }
+}
@@ -3,6 +3,9 @@ package org.springframework.context.event;
 import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
 
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 监听器管理接口，可以将事件发布给多个监听器的；
  * Spring的ApplicationContext就可以委托该类来发布事件；
@@ -25,4 +28,18 @@ public interface ApplicationEventMulticaster {
      * 将事件multicast到合适的监听器
      */
     void multicastEvent(ApplicationEvent event);
+
+    /**
+     * 批量multicast，同一类型的事件只检索一次监听器，
+     * 实现了BatchApplicationListener的监听器可以一次收到整组事件
+     * @see BatchApplicationListener
+     */
+    void multicastEvents(Collection<? extends ApplicationEvent> events);
+
+    /**
+     * 异步multicast，返回的CompletableFuture在所有匹配的监听器都结束后完成；
+     * 有监听器失败或者被丢弃时以EventPublicationException结束，包含全部失败
+     * @see EventPublicationException
+     */
+    CompletableFuture<Void> multicastEventAsync(ApplicationEvent event);
 }
\ No newline at end of file
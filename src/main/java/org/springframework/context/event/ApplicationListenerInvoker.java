@@ -0,0 +1,23 @@
+package org.springframework.context.event;
+
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+
+/**
+ * 真正调用监听器的回调，由multicaster提供给ApplicationEventDispatcher；
+ * 这样分发器只负责"在哪个线程、什么时候调用"，调用本身(异常处理等)仍然由multicaster决定
+ */
+public interface ApplicationListenerInvoker {
+
+    /**
+     * 用给定的事件调用监听器
+     */
+    void invokeListener(ApplicationListener listener, ApplicationEvent event);
+
+    /**
+     * 分发器决定不调用这些监听器(例如队列满了丢弃事件)时通知回调，默认什么都不做；
+     * 需要跟踪每个监听器是否结束的回调(例如异步发布)可以据此把它们当作失败
+     */
+    default void listenersDiscarded(ApplicationListener[] listeners, ApplicationEvent event) {
+    }
+}
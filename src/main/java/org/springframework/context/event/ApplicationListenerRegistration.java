@@ -0,0 +1,31 @@
+package org.springframework.context.event;
+
+import org.springframework.context.ApplicationListener;
+
+import java.io.Closeable;
+
+/**
+ * 注册监听器时返回的句柄，用来在不需要时移除监听器，适合请求之类生命周期较短的代码：
+ * 1. close()只移除这一次注册的监听器，可以重复调用
+ * 2. 弱引用注册时句柄也不会持有监听器本身，监听器被回收后注册会自动失效
+ * @see AbstractApplicationEventMulticaster#registerApplicationListener
+ * @see AbstractApplicationEventMulticaster#registerWeakApplicationListener
+ */
+public interface ApplicationListenerRegistration extends Closeable {
+
+    /**
+     * 返回注册的监听器，弱引用注册并且监听器已经被回收时返回null
+     */
+    ApplicationListener getListener();
+
+    /**
+     * 是否仍然注册着：没有调用过close，监听器没有被回收，也没有通过其他方式被移除
+     */
+    boolean isActive();
+
+    /**
+     * 移除监听器，只让包含它的缓存项更新，其他缓存项继续有效
+     */
+    @Override
+    void close();
+}
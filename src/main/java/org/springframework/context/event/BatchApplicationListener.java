@@ -0,0 +1,19 @@
+package org.springframework.context.event;
+
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+
+import java.util.List;
+
+/**
+ * 可以一次处理一组事件的监听器，批量发布(multicastEvents)时整组事件只回调一次onApplicationEvents；
+ * 单个发布时仍然回调onApplicationEvent
+ * @see ApplicationEventMulticaster#multicastEvents
+ */
+public interface BatchApplicationListener<E extends ApplicationEvent> extends ApplicationListener<E> {
+
+    /**
+     * 处理一组事件，这组事件的类型和事件源类型都相同，按发布顺序排列
+     */
+    void onApplicationEvents(List<E> events);
+}
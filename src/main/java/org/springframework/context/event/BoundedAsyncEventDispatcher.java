@@ -0,0 +1,320 @@
+package org.springframework.context.event;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.util.Assert;
+import org.springframework.util.CustomizableThreadCreator;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 有界队列+固定数量工作线程的异步分发器：
+ * 1. 每个事件只入队一次(事件+监听器快照)，由工作线程依次调用该事件的所有监听器，而不是每个监听器一个Runnable
+ * 2. 队列满了以后按照OverflowPolicy处理，保证突发的事件既不会撑爆内存，也不会无限制地创建线程
+ * 3. 每种溢出处理都有计数器，可以通过getter查看
+ * 4. 工作线程在第一次分发时创建，线程名，优先级，是否守护线程等通过父类CustomizableThreadCreator配置
+ * 5. 监听器抛出的异常交给工作线程的UncaughtExceptionHandler，不会导致工作线程退出
+ * 6. 被丢弃的事件会通过ApplicationListenerInvoker#listenersDiscarded通知回调
+ */
+public class BoundedAsyncEventDispatcher extends CustomizableThreadCreator
+        implements ApplicationEventDispatcher, DisposableBean {
+
+    /**
+     * 队列满时的处理策略
+     */
+    public enum OverflowPolicy {
+        //阻塞发布线程，直到队列有空位
+        BLOCK,
+        //由发布线程自己同步执行
+        CALLER_RUNS,
+        //丢弃队列中最老的事件，再把新的放进去
+        DISCARD_OLDEST,
+        //丢弃新来的事件
+        DISCARD_NEWEST
+    }
+
+    private int workerCount = Runtime.getRuntime().availableProcessors();
+
+    private int queueCapacity = 1024;
+
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+    //destroy时最多等待工作线程处理完剩余事件的时间，0表示不等待
+    private long awaitTerminationMillis = 0;
+
+    private transient volatile BlockingQueue<DispatchTask> queue;
+
+    private transient Thread[] workers;
+
+    private volatile boolean running;
+
+    private volatile boolean shutdown;
+
+    private final LongAdder acceptedCount = new LongAdder();
+
+    private final LongAdder blockedCount = new LongAdder();
+
+    private final LongAdder callerRunsCount = new LongAdder();
+
+    private final LongAdder discardedOldestCount = new LongAdder();
+
+    private final LongAdder discardedNewestCount = new LongAdder();
+
+    public BoundedAsyncEventDispatcher() {
+        super();
+    }
+
+    public BoundedAsyncEventDispatcher(String threadNamePrefix) {
+        super(threadNamePrefix);
+    }
+
+    public void setWorkerCount(int workerCount) {
+        Assert.state(workerCount > 0, "'workerCount' must be positive");
+        this.workerCount = workerCount;
+    }
+
+    public int getWorkerCount() {
+        return this.workerCount;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        Assert.state(queueCapacity > 0, "'queueCapacity' must be positive");
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getQueueCapacity() {
+        return this.queueCapacity;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        Assert.notNull(overflowPolicy, "OverflowPolicy must not be null");
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return this.overflowPolicy;
+    }
+
+    public void setAwaitTerminationMillis(long awaitTerminationMillis) {
+        this.awaitTerminationMillis = awaitTerminationMillis;
+    }
+
+    /**
+     * 创建队列并启动工作线程，可以提前调用，否则第一次分发时自动调用
+     */
+    public synchronized void initialize() {
+        if (this.shutdown) {
+            throw new IllegalStateException("BoundedAsyncEventDispatcher has already been shut down");
+        }
+        if (this.running) {
+            return;
+        }
+        this.queue = new ArrayBlockingQueue<DispatchTask>(this.queueCapacity);
+        this.workers = new Thread[this.workerCount];
+        this.running = true;
+        for (int i = 0; i < this.workers.length; i++) {
+            this.workers[i] = createThread(new Runnable() {
+                public void run() {
+                    runWorker();
+                }
+            });
+            this.workers[i].start();
+        }
+    }
+
+    @Override
+    public void dispatch(ApplicationEvent event, ApplicationListener[] listeners, ApplicationListenerInvoker invoker) {
+        if (!this.running) {
+            initialize();
+        }
+        BlockingQueue<DispatchTask> queue = this.queue;
+        DispatchTask task = new DispatchTask(event, listeners, invoker);
+        if (queue.offer(task)) {
+            this.acceptedCount.increment();
+            discardIfShutdown(queue, task);
+            return;
+        }
+        switch (this.overflowPolicy) {
+            case BLOCK:
+                this.blockedCount.increment();
+                try {
+                    queue.put(task);
+                    this.acceptedCount.increment();
+                    //阻塞期间可能已经destroy，工作线程也已经退出
+                    discardIfShutdown(queue, task);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("Interrupted while waiting for space in event queue", ex);
+                }
+                break;
+            case CALLER_RUNS:
+                this.callerRunsCount.increment();
+                //和同步模式一样，异常直接抛给发布者
+                for (ApplicationListener listener : listeners) {
+                    invoker.invokeListener(listener, event);
+                }
+                break;
+            case DISCARD_OLDEST:
+                //腾出位置的同时可能有别的线程也在放，所以要循环
+                while (!queue.offer(task)) {
+                    DispatchTask discarded = queue.poll();
+                    if (discarded != null) {
+                        this.discardedOldestCount.increment();
+                        discarded.discard();
+                    }
+                }
+                this.acceptedCount.increment();
+                discardIfShutdown(queue, task);
+                break;
+            case DISCARD_NEWEST:
+                this.discardedNewestCount.increment();
+                task.discard();
+                break;
+        }
+    }
+
+    /**
+     * 入队之后再检查一次是否已经关闭：和destroy同时发生时，工作线程可能已经取完队列退出了，
+     * 这时还能从队列中移除说明没有线程会执行它，当作丢弃通知回调
+     */
+    private void discardIfShutdown(BlockingQueue<DispatchTask> queue, DispatchTask task) {
+        if (this.shutdown && queue.remove(task)) {
+            task.discard();
+        }
+    }
+
+    /**
+     * 工作线程：运行时阻塞等待事件；关闭后把队列中剩余的事件处理完再退出
+     */
+    private void runWorker() {
+        BlockingQueue<DispatchTask> queue = this.queue;
+        while (true) {
+            DispatchTask task;
+            try {
+                task = (this.running ? queue.take() : queue.poll());
+            } catch (InterruptedException ex) {
+                //destroy时会中断，回到循环重新检查状态
+                continue;
+            }
+            if (task == null) {
+                return;
+            }
+            task.run();
+        }
+    }
+
+    /**
+     * 停止接收新事件，通知工作线程处理完剩余事件后退出；
+     * 设置了awaitTerminationMillis时，等待超时后队列中还没处理的事件不再执行，通知回调丢弃
+     */
+    @Override
+    public void destroy() {
+        Thread[] workers;
+        synchronized (this) {
+            this.shutdown = true;
+            if (!this.running) {
+                return;
+            }
+            this.running = false;
+            workers = this.workers;
+        }
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        if (this.awaitTerminationMillis > 0) {
+            long deadline = System.currentTimeMillis() + this.awaitTerminationMillis;
+            try {
+                for (Thread worker : workers) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    worker.join(remaining);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            DispatchTask leftover;
+            while ((leftover = this.queue.poll()) != null) {
+                leftover.discard();
+            }
+        }
+    }
+
+    //当前排队中的事件数
+    public int getQueueSize() {
+        BlockingQueue<DispatchTask> queue = this.queue;
+        return (queue != null ? queue.size() : 0);
+    }
+
+    @Override
+    public long getPendingEventCount() {
+        return getQueueSize();
+    }
+
+    //成功入队的事件数
+    public long getAcceptedCount() {
+        return this.acceptedCount.sum();
+    }
+
+    //BLOCK策略下发布线程被阻塞的次数
+    public long getBlockedCount() {
+        return this.blockedCount.sum();
+    }
+
+    //CALLER_RUNS策略下由发布线程执行的事件数
+    public long getCallerRunsCount() {
+        return this.callerRunsCount.sum();
+    }
+
+    //DISCARD_OLDEST策略下被挤出队列的事件数
+    public long getDiscardedOldestCount() {
+        return this.discardedOldestCount.sum();
+    }
+
+    //DISCARD_NEWEST策略下被丢弃的事件数
+    public long getDiscardedNewestCount() {
+        return this.discardedNewestCount.sum();
+    }
+
+
+    /**
+     * 队列中的一项：一个事件以及它的全部监听器
+     */
+    private static final class DispatchTask implements Runnable {
+
+        private final ApplicationEvent event;
+
+        private final ApplicationListener[] listeners;
+
+        private final ApplicationListenerInvoker invoker;
+
+        DispatchTask(ApplicationEvent event, ApplicationListener[] listeners, ApplicationListenerInvoker invoker) {
+            this.event = event;
+            this.listeners = listeners;
+            this.invoker = invoker;
+        }
+
+        //被溢出策略丢弃时通知回调
+        void discard() {
+            this.invoker.listenersDiscarded(this.listeners, this.event);
+        }
+
+        @Override
+        public void run() {
+            for (ApplicationListener listener : this.listeners) {
+                try {
+                    this.invoker.invokeListener(listener, this.event);
+                } catch (Throwable ex) {
+                    //一个监听器失败不影响后面的监听器，也不能让工作线程退出
+                    Thread current = Thread.currentThread();
+                    current.getUncaughtExceptionHandler().uncaughtException(current, ex);
+                }
+            }
+        }
+    }
+}
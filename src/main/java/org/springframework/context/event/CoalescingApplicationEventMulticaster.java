@@ -0,0 +1,474 @@
+package org.springframework.context.event;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.util.Assert;
+import org.springframework.util.CustomizableThreadCreator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * 包在另一个multicaster(一般是SimpleApplicationEventMulticaster)外面，把高频事件按(事件类型, key)合并后再发布：
+ * 1. 只有通过addCoalescer注册过的事件类型才会合并，其他事件直接交给目标multicaster
+ * 2. windowMillis大于0时，同一个key的第一个事件到达后等待一个时间窗口，窗口内的事件合并成一个，窗口结束时发布
+ * 3. windowMillis为0时，同一个key上一次投递还在执行时，新到的事件先合并，等上一次投递结束后立即发布合并结果，
+ * 也就是"等监听器空闲"；投递在deliveryExecutor中执行，没有设置时由发布线程执行
+ * 4. 合并的方式由ApplicationEventCoalescer#merge决定，默认只保留最新的事件
+ * 5. multicastEventAsync返回的future在合并后的事件投递完成时完成，被合并的每个事件都会拿到同样的结果
+ * 6. 可以作为名为applicationEventMulticaster的bean，替换容器默认的广播器
+ * 7. 合并槽按(事件类型, key)创建后一直保留，key应该是有限的集合，例如配置项名称，缓存名称
+ */
+public class CoalescingApplicationEventMulticaster implements ApplicationEventMulticaster, DisposableBean {
+
+    //缓存中表示"该事件类型不合并"
+    private static final CoalescingRule NO_RULE = new CoalescingRule(ApplicationEvent.class, null, 0);
+
+    private final ApplicationEventMulticaster target;
+
+    //规则和匹配缓存放在一起，修改规则时整体替换；用旧规则算出的结果只会放进旧的缓存，不会污染新的
+    private volatile RuleSet ruleSet = new RuleSet(new ArrayList<CoalescingRule>());
+
+    private final ConcurrentMap<SlotKey, Slot> slots = new ConcurrentHashMap<SlotKey, Slot>();
+
+    private Executor deliveryExecutor;
+
+    private ScheduledExecutorService scheduler;
+
+    //自己创建的scheduler，destroy时需要关闭
+    private boolean internalScheduler;
+
+    private final LongAdder receivedCount = new LongAdder();
+
+    private final LongAdder coalescedCount = new LongAdder();
+
+    private final LongAdder deliveredCount = new LongAdder();
+
+    public CoalescingApplicationEventMulticaster(ApplicationEventMulticaster target) {
+        Assert.notNull(target, "Target ApplicationEventMulticaster must not be null");
+        this.target = target;
+    }
+
+    /**
+     * 合并某一类事件(包括子类)，按注册顺序匹配第一个
+     * @param eventType 事件类型
+     * @param coalescer 提供合并key和合并方式
+     * @param windowMillis 合并时间窗口，0表示只在上一次投递执行期间合并
+     */
+    public void addCoalescer(Class<? extends ApplicationEvent> eventType, ApplicationEventCoalescer coalescer,
+                             long windowMillis) {
+        Assert.notNull(eventType, "Event type must not be null");
+        Assert.notNull(coalescer, "ApplicationEventCoalescer must not be null");
+        Assert.state(windowMillis >= 0, "'windowMillis' must not be negative");
+        synchronized (this) {
+            List<CoalescingRule> rules = new ArrayList<CoalescingRule>(this.ruleSet.rules);
+            rules.add(new CoalescingRule(eventType, coalescer, windowMillis));
+            this.ruleSet = new RuleSet(rules);
+        }
+    }
+
+    /**
+     * windowMillis为0的事件在这里投递，null表示由发布线程投递
+     */
+    public void setDeliveryExecutor(Executor deliveryExecutor) {
+        this.deliveryExecutor = deliveryExecutor;
+    }
+
+    /**
+     * 时间窗口结束时用来投递的调度线程池，没有设置时第一次需要时创建一个守护线程
+     */
+    public synchronized void setScheduler(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+        this.internalScheduler = false;
+    }
+
+    private synchronized ScheduledExecutorService getScheduler() {
+        if (this.scheduler == null) {
+            final CustomizableThreadCreator threadCreator = new CustomizableThreadCreator("event-coalescer-");
+            threadCreator.setDaemon(true);
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    return threadCreator.createThread(runnable);
+                }
+            });
+            this.internalScheduler = true;
+        }
+        return this.scheduler;
+    }
+
+    public ApplicationEventMulticaster getTarget() {
+        return this.target;
+    }
+
+    @Override
+    public void addApplicationListener(ApplicationListener listener) {
+        this.target.addApplicationListener(listener);
+    }
+
+    @Override
+    public void addApplicationListenerBean(String listenerBeanName) {
+        this.target.addApplicationListenerBean(listenerBeanName);
+    }
+
+    @Override
+    public void removeApplicationListener(ApplicationListener listener) {
+        this.target.removeApplicationListener(listener);
+    }
+
+    @Override
+    public void removeApplicationListenerBean(String listenerBeanName) {
+        this.target.removeApplicationListenerBean(listenerBeanName);
+    }
+
+    @Override
+    public void removeAllListeners() {
+        this.target.removeAllListeners();
+    }
+
+    @Override
+    public void multicastEvent(ApplicationEvent event) {
+        this.receivedCount.increment();
+        Slot slot = getSlot(event);
+        if (slot == null) {
+            this.target.multicastEvent(event);
+        } else {
+            slot.offer(event, null);
+        }
+    }
+
+    /**
+     * 不合并的事件仍然整批交给目标multicaster，合并的逐个放进对应的槽
+     */
+    @Override
+    public void multicastEvents(Collection<? extends ApplicationEvent> events) {
+        List<ApplicationEvent> passThrough = new ArrayList<ApplicationEvent>(events.size());
+        for (ApplicationEvent event : events) {
+            this.receivedCount.increment();
+            Slot slot = getSlot(event);
+            if (slot == null) {
+                passThrough.add(event);
+            } else {
+                slot.offer(event, null);
+            }
+        }
+        if (!passThrough.isEmpty()) {
+            this.target.multicastEvents(passThrough);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> multicastEventAsync(ApplicationEvent event) {
+        this.receivedCount.increment();
+        Slot slot = getSlot(event);
+        if (slot == null) {
+            return this.target.multicastEventAsync(event);
+        }
+        CompletableFuture<Void> future = new CompletableFuture<Void>();
+        slot.offer(event, future);
+        return future;
+    }
+
+    private Slot getSlot(ApplicationEvent event) {
+        CoalescingRule rule = getRule(event.getClass());
+        if (rule == NO_RULE) {
+            return null;
+        }
+        Object key = rule.coalescer.getCoalescingKey(event);
+        if (key == null) {
+            return null;
+        }
+        SlotKey slotKey = new SlotKey(rule.eventType, key);
+        Slot slot = this.slots.get(slotKey);
+        if (slot == null) {
+            Slot newSlot = new Slot(rule);
+            slot = this.slots.putIfAbsent(slotKey, newSlot);
+            if (slot == null) {
+                slot = newSlot;
+            }
+        }
+        return slot;
+    }
+
+    private CoalescingRule getRule(Class<?> eventClass) {
+        RuleSet ruleSet = this.ruleSet;
+        CoalescingRule rule = ruleSet.cache.get(eventClass);
+        if (rule == null) {
+            rule = NO_RULE;
+            for (CoalescingRule candidate : ruleSet.rules) {
+                if (candidate.eventType.isAssignableFrom(eventClass)) {
+                    rule = candidate;
+                    break;
+                }
+            }
+            ruleSet.cache.put(eventClass, rule);
+        }
+        return rule;
+    }
+
+    @Override
+    public void destroy() {
+        ScheduledExecutorService scheduler;
+        synchronized (this) {
+            scheduler = (this.internalScheduler ? this.scheduler : null);
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    //收到的事件总数
+    public long getReceivedCount() {
+        return this.receivedCount.sum();
+    }
+
+    //被合并掉(没有单独投递)的事件数
+    public long getCoalescedCount() {
+        return this.coalescedCount.sum();
+    }
+
+    //合并后真正投递给目标multicaster的事件数
+    public long getDeliveredCount() {
+        return this.deliveredCount.sum();
+    }
+
+    //当前的合并槽数量，每个(事件类型, key)一个
+    public int getSlotCount() {
+        return this.slots.size();
+    }
+
+
+    /**
+     * 某一时刻的全部规则，以及按它们算出的匹配结果，规则部分不可变
+     */
+    private static final class RuleSet {
+
+        final List<CoalescingRule> rules;
+
+        //事件Class -> 匹配的规则
+        final ConcurrentMap<Class<?>, CoalescingRule> cache = new ConcurrentHashMap<Class<?>, CoalescingRule>();
+
+        RuleSet(List<CoalescingRule> rules) {
+            this.rules = rules;
+        }
+    }
+
+
+    private static final class CoalescingRule {
+
+        final Class<?> eventType;
+
+        final ApplicationEventCoalescer coalescer;
+
+        final long windowMillis;
+
+        CoalescingRule(Class<?> eventType, ApplicationEventCoalescer coalescer, long windowMillis) {
+            this.eventType = eventType;
+            this.coalescer = coalescer;
+            this.windowMillis = windowMillis;
+        }
+    }
+
+
+    private static final class SlotKey {
+
+        private final Class<?> eventType;
+
+        private final Object key;
+
+        SlotKey(Class<?> eventType, Object key) {
+            this.eventType = eventType;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof SlotKey)) {
+                return false;
+            }
+            SlotKey otherKey = (SlotKey) other;
+            return (this.eventType == otherKey.eventType && this.key.equals(otherKey.key));
+        }
+
+        @Override
+        public int hashCode() {
+            return this.eventType.hashCode() * 29 + this.key.hashCode();
+        }
+    }
+
+
+    /**
+     * 还没投递的合并结果，以及等待它的future；不可变，通过CAS替换
+     */
+    private static final class Pending {
+
+        final ApplicationEvent event;
+
+        final CompletableFuture<Void>[] futures;
+
+        Pending(ApplicationEvent event, CompletableFuture<Void>[] futures) {
+            this.event = event;
+            this.futures = futures;
+        }
+
+        @SuppressWarnings("unchecked")
+        static CompletableFuture<Void>[] append(CompletableFuture<Void>[] futures, CompletableFuture<Void> future) {
+            if (future == null) {
+                return futures;
+            }
+            if (futures == null) {
+                return new CompletableFuture[] {future};
+            }
+            CompletableFuture<Void>[] result = new CompletableFuture[futures.length + 1];
+            System.arraycopy(futures, 0, result, 0, futures.length);
+            result[futures.length] = future;
+            return result;
+        }
+    }
+
+
+    /**
+     * 一个(事件类型, key)的合并槽：pending是还没投递的合并结果，scheduled保证同一时间最多只有一次投递在排队或执行
+     */
+    private final class Slot implements Runnable {
+
+        private final CoalescingRule rule;
+
+        private final AtomicReference<Pending> pending = new AtomicReference<Pending>();
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Slot(CoalescingRule rule) {
+            this.rule = rule;
+        }
+
+        void offer(ApplicationEvent event, CompletableFuture<Void> future) {
+            Pending current;
+            Pending next;
+            do {
+                current = this.pending.get();
+                if (current == null) {
+                    next = new Pending(event, Pending.append(null, future));
+                } else {
+                    next = new Pending(this.rule.coalescer.merge(current.event, event),
+                            Pending.append(current.futures, future));
+                }
+            } while (!this.pending.compareAndSet(current, next));
+            if (current != null) {
+                coalescedCount.increment();
+            }
+            schedule();
+        }
+
+        /**
+         * 由发布线程投递时在这里循环，投递期间又有新事件的话继续投递，避免递归；
+         * 投递失败也要继续，否则投递期间合并进来的事件没有人投递，第一个异常等pending投递完再抛给发布者，
+         * 之后的异常交给当前线程的UncaughtExceptionHandler
+         */
+        private void schedule() {
+            Throwable failure = null;
+            while (this.scheduled.compareAndSet(false, true)) {
+                try {
+                    if (this.rule.windowMillis > 0) {
+                        getScheduler().schedule(this, this.rule.windowMillis, TimeUnit.MILLISECONDS);
+                        return;
+                    }
+                    if (deliveryExecutor != null) {
+                        deliveryExecutor.execute(this);
+                        return;
+                    }
+                } catch (RuntimeException ex) {
+                    //没有调度成功，恢复状态，下一个事件到达时再尝试
+                    this.scheduled.set(false);
+                    throw ex;
+                }
+                try {
+                    deliverPending();
+                } catch (RuntimeException | Error ex) {
+                    if (failure == null) {
+                        failure = ex;
+                    } else {
+                        Thread current = Thread.currentThread();
+                        current.getUncaughtExceptionHandler().uncaughtException(current, ex);
+                    }
+                }
+                if (this.pending.get() == null) {
+                    break;
+                }
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+        }
+
+        /**
+         * 在调度线程或者deliveryExecutor中执行，异常交给当前线程的UncaughtExceptionHandler，
+         * 否则ScheduledExecutorService会把异常吞掉
+         */
+        @Override
+        public void run() {
+            try {
+                deliverPending();
+            } catch (Throwable ex) {
+                Thread current = Thread.currentThread();
+                current.getUncaughtExceptionHandler().uncaughtException(current, ex);
+            }
+            if (this.pending.get() != null) {
+                schedule();
+            }
+        }
+
+        //投递当前的合并结果，投递期间到达的事件继续合并到pending中
+        private void deliverPending() {
+            try {
+                Pending toDeliver = this.pending.getAndSet(null);
+                if (toDeliver != null) {
+                    deliver(toDeliver);
+                }
+            } finally {
+                this.scheduled.set(false);
+            }
+        }
+
+        private void deliver(final Pending toDeliver) {
+            deliveredCount.increment();
+            if (toDeliver.futures == null) {
+                target.multicastEvent(toDeliver.event);
+                return;
+            }
+            CompletableFuture<Void> result;
+            try {
+                result = target.multicastEventAsync(toDeliver.event);
+            } catch (RuntimeException ex) {
+                for (CompletableFuture<Void> future : toDeliver.futures) {
+                    future.completeExceptionally(ex);
+                }
+                throw ex;
+            }
+            result.whenComplete(new BiConsumer<Void, Throwable>() {
+                public void accept(Void ignored, Throwable ex) {
+                    for (CompletableFuture<Void> future : toDeliver.futures) {
+                        if (ex != null) {
+                            future.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ?
+                                    ex.getCause() : ex);
+                        } else {
+                            future.complete(null);
+                        }
+                    }
+                }
+            });
+        }
+    }
+}
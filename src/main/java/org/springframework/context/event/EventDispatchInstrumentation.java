@@ -0,0 +1,50 @@
+package org.springframework.context.event;
+
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 事件分发的埋点SPI，设置到multicaster上才会生效，没有设置时multicaster只多一次null判断；
+ * 实现类会在发布线程和异步线程中被并发调用，需要保证线程安全并且足够轻量
+ * @see AbstractApplicationEventMulticaster#setInstrumentation
+ * @see SimpleEventDispatchMetrics
+ */
+public interface EventDispatchInstrumentation {
+
+    /**
+     * 发布了一个事件，批量发布时每个事件都会调用一次
+     */
+    void eventPublished(ApplicationEvent event);
+
+    /**
+     * 一次监听器调用结束
+     * @param listener 被调用的监听器
+     * @param event 调用时的事件，批量回调时是这一组中的第一个
+     * @param durationNanos 耗时，纳秒
+     * @param failure 监听器抛出的异常，正常结束是null
+     */
+    void listenerInvoked(ApplicationListener listener, ApplicationEvent event, long durationNanos, Throwable failure);
+
+    /**
+     * 检索监听器时命中了缓存
+     */
+    void retrieverCacheHit();
+
+    /**
+     * 检索监听器时缓存不存在、已过期或者不能缓存，需要重新检索
+     */
+    void retrieverCacheMiss();
+
+    /**
+     * 注册表发生了变化，已有的缓存项全部过期(相当于原来的retrieverCache.clear())
+     */
+    void retrieverCacheInvalidated();
+
+    /**
+     * 绑定异步队列深度的来源，设置到multicaster上时调用
+     * @param queueDepth 返回当前还未处理的事件(或任务)数
+     */
+    void bindQueueDepth(LongSupplier queueDepth);
+}
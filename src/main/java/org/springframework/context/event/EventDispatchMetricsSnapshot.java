@@ -0,0 +1,167 @@
+package org.springframework.context.event;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * SimpleEventDispatchMetrics在某一时刻的快照，不可变
+ */
+public class EventDispatchMetricsSnapshot {
+
+    private final long uptimeMillis;
+
+    private final long publishedCount;
+
+    private final Map<Class<?>, Long> publishedCountByEventType;
+
+    private final double publishRate;
+
+    private final long retrieverCacheHits;
+
+    private final long retrieverCacheMisses;
+
+    private final long retrieverCacheInvalidations;
+
+    private final long queueDepth;
+
+    private final Map<Class<?>, LatencySnapshot> eventTypeStats;
+
+    private final Map<Class<?>, LatencySnapshot> listenerStats;
+
+    public EventDispatchMetricsSnapshot(long uptimeMillis, long publishedCount,
+                                        Map<Class<?>, Long> publishedCountByEventType, long retrieverCacheHits,
+                                        long retrieverCacheMisses, long retrieverCacheInvalidations, long queueDepth,
+                                        Map<Class<?>, LatencySnapshot> eventTypeStats,
+                                        Map<Class<?>, LatencySnapshot> listenerStats) {
+        this.uptimeMillis = uptimeMillis;
+        this.publishedCount = publishedCount;
+        this.publishedCountByEventType = Collections.unmodifiableMap(publishedCountByEventType);
+        this.publishRate = (uptimeMillis > 0 ? publishedCount * 1000.0 / uptimeMillis : 0.0);
+        this.retrieverCacheHits = retrieverCacheHits;
+        this.retrieverCacheMisses = retrieverCacheMisses;
+        this.retrieverCacheInvalidations = retrieverCacheInvalidations;
+        this.queueDepth = queueDepth;
+        this.eventTypeStats = Collections.unmodifiableMap(eventTypeStats);
+        this.listenerStats = Collections.unmodifiableMap(listenerStats);
+    }
+
+    //开始统计(或上次reset)到现在的毫秒数
+    public long getUptimeMillis() {
+        return this.uptimeMillis;
+    }
+
+    public long getPublishedCount() {
+        return this.publishedCount;
+    }
+
+    //事件类型 -> 该类型事件的发布次数，按事件的实际Class统计
+    public Map<Class<?>, Long> getPublishedCountByEventType() {
+        return this.publishedCountByEventType;
+    }
+
+    //平均每秒发布的事件数
+    public double getPublishRate() {
+        return this.publishRate;
+    }
+
+    public long getRetrieverCacheHits() {
+        return this.retrieverCacheHits;
+    }
+
+    public long getRetrieverCacheMisses() {
+        return this.retrieverCacheMisses;
+    }
+
+    public long getRetrieverCacheInvalidations() {
+        return this.retrieverCacheInvalidations;
+    }
+
+    //异步队列中还未处理的事件数，同步执行时是0
+    public long getQueueDepth() {
+        return this.queueDepth;
+    }
+
+    //事件类型 -> 该类型事件所有监听器调用的耗时统计
+    public Map<Class<?>, LatencySnapshot> getEventTypeStats() {
+        return this.eventTypeStats;
+    }
+
+    //监听器Class -> 该监听器调用的耗时统计
+    public Map<Class<?>, LatencySnapshot> getListenerStats() {
+        return this.listenerStats;
+    }
+
+    @Override
+    public String toString() {
+        return "published=" + this.publishedCount + ", rate=" + String.format("%.1f/s", this.publishRate) +
+                ", cacheHits=" + this.retrieverCacheHits + ", cacheMisses=" + this.retrieverCacheMisses +
+                ", cacheInvalidations=" + this.retrieverCacheInvalidations + ", queueDepth=" + this.queueDepth;
+    }
+
+
+    /**
+     * 一组调用的耗时统计，百分位数来自以2为底的对数直方图，是所在区间的上界，精度在2倍以内
+     */
+    public static class LatencySnapshot {
+
+        private final long count;
+
+        private final long failures;
+
+        private final long totalNanos;
+
+        private final long maxNanos;
+
+        private final long p50Nanos;
+
+        private final long p90Nanos;
+
+        private final long p99Nanos;
+
+        public LatencySnapshot(long count, long failures, long totalNanos, long maxNanos,
+                               long p50Nanos, long p90Nanos, long p99Nanos) {
+            this.count = count;
+            this.failures = failures;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.p50Nanos = p50Nanos;
+            this.p90Nanos = p90Nanos;
+            this.p99Nanos = p99Nanos;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public long getFailures() {
+            return this.failures;
+        }
+
+        public long getMeanNanos() {
+            return (this.count > 0 ? this.totalNanos / this.count : 0);
+        }
+
+        public long getMaxNanos() {
+            return this.maxNanos;
+        }
+
+        public long getP50Nanos() {
+            return this.p50Nanos;
+        }
+
+        public long getP90Nanos() {
+            return this.p90Nanos;
+        }
+
+        public long getP99Nanos() {
+            return this.p99Nanos;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + this.count + ", failures=" + this.failures + ", mean=" + getMeanNanos() +
+                    "ns, p50=" + this.p50Nanos + "ns, p90=" + this.p90Nanos + "ns, p99=" + this.p99Nanos +
+                    "ns, max=" + this.maxNanos + "ns";
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.springframework.context.event;
+
+import org.springframework.context.ApplicationEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 异步发布的事件有监听器执行失败时，返回的CompletableFuture以该异常结束：
+ * 1. 等所有监听器都结束后才抛出，包含全部失败，而不只是第一个
+ * 2. 第一个失败作为cause，全部失败都作为suppressed附加，打印堆栈时都能看到
+ * 3. 被分发器丢弃(例如队列满了)的监听器也算作失败
+ * 4. ForkJoinEventDispatcher同步发布时有多个监听器失败，也用它把全部失败一起抛出
+ * @see ApplicationEventMulticaster#multicastEventAsync
+ * @see ForkJoinEventDispatcher
+ */
+public class EventPublicationException extends RuntimeException {
+
+    private final transient ApplicationEvent event;
+
+    private final List<Throwable> failures;
+
+    public EventPublicationException(ApplicationEvent event, List<Throwable> failures) {
+        super(failures.size() + " listener(s) failed for event " + event, (failures.isEmpty() ? null : failures.get(0)));
+        this.event = event;
+        this.failures = Collections.unmodifiableList(new ArrayList<Throwable>(failures));
+        for (Throwable failure : this.failures) {
+            addSuppressed(failure);
+        }
+    }
+
+    public ApplicationEvent getEvent() {
+        return this.event;
+    }
+
+    //所有失败的监听器抛出的异常，顺序是结束的先后顺序
+    public List<Throwable> getFailures() {
+        return this.failures;
+    }
+}
@@ -0,0 +1,135 @@
+package org.springframework.context.event;
+
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.task.ForkJoinTaskExecutor;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 在ForkJoinPool中并行调用同一个事件的多个监听器，发布线程等待全部监听器结束后才返回：
+ * 1. 监听器数组按二分拆成子任务fork出去，子任务不超过sequentialThreshold个监听器时直接顺序调用
+ * 2. 空闲的工作线程会偷走别的线程上的子任务，适合CPU密集的监听器
+ * 3. 一个监听器失败不影响其他监听器，全部结束后只有一个失败时原样抛出，
+ *    多个失败时抛出EventPublicationException，包含全部失败，不会改动监听器抛出的异常
+ * 4. 只有一个监听器(或者不超过阈值)时直接在发布线程中调用，不进入线程池
+ * @see ForkJoinTaskExecutor
+ */
+public class ForkJoinEventDispatcher implements ApplicationEventDispatcher {
+
+    private final ForkJoinPool forkJoinPool;
+
+    private int sequentialThreshold = 1;
+
+    public ForkJoinEventDispatcher(ForkJoinPool forkJoinPool) {
+        Assert.notNull(forkJoinPool, "ForkJoinPool must not be null");
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    public ForkJoinEventDispatcher(ForkJoinTaskExecutor taskExecutor) {
+        Assert.notNull(taskExecutor, "ForkJoinTaskExecutor must not be null");
+        this.forkJoinPool = taskExecutor.getForkJoinPool();
+    }
+
+    /**
+     * 一个子任务最多顺序调用的监听器数，默认1，即每个监听器都是一个子任务；监听器很轻的话调大可以减少fork的开销
+     */
+    public void setSequentialThreshold(int sequentialThreshold) {
+        Assert.state(sequentialThreshold > 0, "'sequentialThreshold' must be positive");
+        this.sequentialThreshold = sequentialThreshold;
+    }
+
+    public int getSequentialThreshold() {
+        return this.sequentialThreshold;
+    }
+
+    @Override
+    public void dispatch(ApplicationEvent event, ApplicationListener[] listeners, ApplicationListenerInvoker invoker) {
+        FanOutTask task = new FanOutTask(event, listeners, invoker, 0, listeners.length, this.sequentialThreshold);
+        List<Throwable> failures = (listeners.length <= this.sequentialThreshold ? task.compute() : this.forkJoinPool.invoke(task));
+        if (failures == null) {
+            return;
+        }
+        if (failures.size() > 1) {
+            throw new EventPublicationException(event, failures);
+        }
+        Throwable failure = failures.get(0);
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw new IllegalStateException("Listener invocation failed for event " + event, failure);
+    }
+
+    @Override
+    public long getPendingEventCount() {
+        return this.forkJoinPool.getQueuedSubmissionCount();
+    }
+
+
+    /**
+     * 调用[from, to)范围内的监听器，返回按监听器顺序排列的全部异常，没有异常返回null
+     */
+    private static final class FanOutTask extends RecursiveTask<List<Throwable>> {
+
+        private final ApplicationEvent event;
+
+        private final ApplicationListener[] listeners;
+
+        private final ApplicationListenerInvoker invoker;
+
+        private final int from;
+
+        private final int to;
+
+        private final int threshold;
+
+        FanOutTask(ApplicationEvent event, ApplicationListener[] listeners, ApplicationListenerInvoker invoker,
+                   int from, int to, int threshold) {
+            this.event = event;
+            this.listeners = listeners;
+            this.invoker = invoker;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected List<Throwable> compute() {
+            if (this.to - this.from <= this.threshold) {
+                List<Throwable> failures = null;
+                for (int i = this.from; i < this.to; i++) {
+                    try {
+                        this.invoker.invokeListener(this.listeners[i], this.event);
+                    } catch (Throwable ex) {
+                        if (failures == null) {
+                            failures = new ArrayList<Throwable>(2);
+                        }
+                        failures.add(ex);
+                    }
+                }
+                return failures;
+            }
+            int mid = (this.from + this.to) >>> 1;
+            FanOutTask right = new FanOutTask(this.event, this.listeners, this.invoker, mid, this.to, this.threshold);
+            right.fork();
+            FanOutTask left = new FanOutTask(this.event, this.listeners, this.invoker, this.from, mid, this.threshold);
+            List<Throwable> leftFailures = left.compute();
+            List<Throwable> rightFailures = right.join();
+            if (leftFailures == null) {
+                return rightFailures;
+            }
+            if (rightFailures != null) {
+                //左边的列表是这个子任务自己创建的，可以直接追加
+                leftFailures.addAll(rightFailures);
+            }
+            return leftFailures;
+        }
+    }
+}
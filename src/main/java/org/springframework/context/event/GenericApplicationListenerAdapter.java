@@ -4,19 +4,37 @@ import org.springframework.aop.support.AopUtils;
 import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
 import org.springframework.core.GenericTypeResolver;
+import org.springframework.core.Ordered;
 import org.springframework.util.Assert;
 
 /**
  * SmartApplicationListener的适配器，用于确定是否支持事件的
+ * 1. 监听器声明的事件类型在创建适配器时就解析好，之后判断只需要一次isAssignableFrom
+ * 2. 按监听器Class解析的结果缓存在ClassValue中，值挂在Class对象上，不会阻止类加载器被卸载
  */
 public class GenericApplicationListenerAdapter implements SmartApplicationListener{
 
+    /**
+     * 监听器Class -> 泛型中声明的事件类型，解析不出来的统一当作ApplicationEvent(支持所有事件)
+     */
+    private static final ClassValue<Class<?>> declaredEventTypeCache = new ClassValue<Class<?>>() {
+        @Override
+        protected Class<?> computeValue(Class<?> listenerClass) {
+            Class<?> typeArg = GenericTypeResolver.resolveTypeArgument(listenerClass, ApplicationListener.class);
+            return (typeArg != null ? typeArg : ApplicationEvent.class);
+        }
+    };
+
     //委托人?
     private final ApplicationListener delegate;
 
+    //构造时就解析好的事件类型
+    private final Class<?> declaredEventType;
+
     public GenericApplicationListenerAdapter(ApplicationListener delegate) {
         Assert.notNull(delegate, "Delegate listener must not be null");
         this.delegate = delegate;
+        this.declaredEventType = resolveDeclaredEventType(delegate);
     }
 
     @Override
@@ -29,25 +47,13 @@ public class GenericApplicationListenerAdapter implements SmartApplicationListen
      * 1. 获取监听器泛型中的类型是什么
      * 2. 经过代理对象，使用AopUtils.getTargetClass获取代理类的Class
      * 3. 判断该类型是否是所需判断事件的父类或者父接口，是就表示支持，子类可以转成父类，但是父类不一定可以转成子类；
+     * 前两步在构造时完成，这里只做第3步
      * @param eventType
      * @return
      */
     @Override
     public boolean supportsEventType(Class<? extends ApplicationEvent> eventType) {
-        Class<?> typeArg = GenericTypeResolver.resolveTypeArgument(this.delegate.getClass(), ApplicationListener.class);
-        //因为找不到所以判断可能是代理
-        if (typeArg == null || typeArg.equals(ApplicationEvent.class)) {
-            //想要找到代理的Class有两种方法，
-            //1. 一种是该类已经实现了TargetClassAware，可以直接拿到代理类
-            //2. 一种是拿到它的父类，我觉得其实没用，因为如果是代理类，那么上面那个方法会自动往上遍历，自动可以找到
-            Class<?> targetClass = AopUtils.getTargetClass(this.delegate);
-            if (targetClass != this.delegate.getClass()) {
-                typeArg = GenericTypeResolver.resolveTypeArgument(targetClass, ApplicationListener.class);
-            }
-        }
-
-        //找不到就是默认支持？
-        return (typeArg == null || typeArg.isAssignableFrom(eventType));
+        return this.declaredEventType.isAssignableFrom(eventType);
     }
 
     //无论什么都支持
@@ -55,4 +61,36 @@ public class GenericApplicationListenerAdapter implements SmartApplicationListen
     public boolean supportsSourceType(Class<?> sourceType) {
         return true;
     }
+
+    //被适配的监听器实现了Ordered就用它的，否则是最低优先级
+    @Override
+    public int getOrder() {
+        return (this.delegate instanceof Ordered ? ((Ordered) this.delegate).getOrder() : Ordered.LOWEST_PRECEDENCE);
+    }
+
+    /**
+     * 返回监听器声明的事件类型，解析不出来时是ApplicationEvent
+     */
+    public Class<?> getDeclaredEventType() {
+        return this.declaredEventType;
+    }
+
+    /**
+     * 解析监听器声明的事件类型
+     * 1. 先按监听器自己的Class从缓存中取
+     * 2. 找不到具体类型时，可能是代理，想要找到代理的Class有两种方法，
+     * (1) 一种是该类已经实现了TargetClassAware，可以直接拿到代理类
+     * (2) 一种是拿到它的父类，我觉得其实没用，因为如果是代理类，那么上面那个方法会自动往上遍历，自动可以找到
+     * 目标类同样从缓存中取；TargetClassAware是按实例返回的，所以这一步不能按Class缓存
+     */
+    static Class<?> resolveDeclaredEventType(ApplicationListener listener) {
+        Class<?> declaredEventType = declaredEventTypeCache.get(listener.getClass());
+        if (declaredEventType == ApplicationEvent.class) {
+            Class<?> targetClass = AopUtils.getTargetClass(listener);
+            if (targetClass != listener.getClass()) {
+                declaredEventType = declaredEventTypeCache.get(targetClass);
+            }
+        }
+        return declaredEventType;
+    }
 }
@@ -0,0 +1,514 @@
+package org.springframework.context.event;
+
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.util.Assert;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 给每个监听器加上超时，舱壁(并发上限)和熔断保护的分发器，包装在另一个分发器外面(或者直接在发布线程中执行)：
+ * 1. 保护是按监听器实例的，一个监听器卡住或者一直失败，只会让它自己被跳过，不影响其他监听器和发布吞吐
+ * 2. 设置了timeoutExecutor时，有超时配置的监听器在其中执行，发布线程最多等待timeoutMillis，超时后中断并跳过；
+ * 没有timeoutExecutor时超时只能事后统计：执行时间超过timeoutMillis的调用计为超时，作为失败计入熔断
+ * 3. 被跳过(熔断，舱壁已满，超时)的监听器通过ApplicationListenerInvoker#listenersDiscarded通知，异步发布时记为失败
+ * 4. 监听器自己抛出的异常计入熔断后照常抛出，和不加保护时一样
+ * 5. 每一种跳过和熔断状态切换都有计数器
+ * 6. 监听器的保护状态按监听器实例(identity)弱引用保存，查找不加锁，监听器被移除并回收后状态也随之清理
+ * @see ListenerGuardPolicy
+ */
+public class GuardedEventDispatcher implements ApplicationEventDispatcher {
+
+    /**
+     * 熔断器状态
+     */
+    public enum CircuitState {
+        //正常调用
+        CLOSED,
+        //熔断中，调用直接跳过
+        OPEN,
+        //熔断时间已过，放行一次试探调用
+        HALF_OPEN
+    }
+
+    private final ApplicationEventDispatcher delegate;
+
+    private ListenerGuardPolicy defaultPolicy = new ListenerGuardPolicy();
+
+    private final List<PolicyMapping> policyMappings = new CopyOnWriteArrayList<PolicyMapping>();
+
+    private Executor timeoutExecutor;
+
+    //监听器(弱引用，按identity比较) -> 保护状态；ListenerGuard不能引用监听器本身
+    private final ConcurrentMap<GuardKey, ListenerGuard> guards = new ConcurrentHashMap<GuardKey, ListenerGuard>();
+
+    //监听器被回收后GuardKey进入这个队列，分发时顺便清理
+    private final ReferenceQueue<ApplicationListener> staleGuardQueue = new ReferenceQueue<ApplicationListener>();
+
+    private final LongAdder failureCount = new LongAdder();
+
+    private final LongAdder slowCallCount = new LongAdder();
+
+    private final LongAdder timeoutCount = new LongAdder();
+
+    private final LongAdder bulkheadRejectedCount = new LongAdder();
+
+    private final LongAdder shortCircuitedCount = new LongAdder();
+
+    private final LongAdder circuitOpenedCount = new LongAdder();
+
+    private final LongAdder circuitHalfOpenedCount = new LongAdder();
+
+    private final LongAdder circuitClosedCount = new LongAdder();
+
+    /**
+     * 在发布线程中执行
+     */
+    public GuardedEventDispatcher() {
+        this(null);
+    }
+
+    /**
+     * @param delegate 实际负责执行的分发器，null表示在发布线程中执行
+     */
+    public GuardedEventDispatcher(ApplicationEventDispatcher delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 没有单独配置的监听器使用的策略，只对之后第一次调用的监听器生效
+     */
+    public void setDefaultPolicy(ListenerGuardPolicy defaultPolicy) {
+        Assert.notNull(defaultPolicy, "ListenerGuardPolicy must not be null");
+        this.defaultPolicy = defaultPolicy;
+    }
+
+    /**
+     * 给某一类监听器单独配置策略，按添加顺序匹配第一个，只对之后第一次调用的监听器生效
+     */
+    public void addPolicy(Class<?> listenerType, ListenerGuardPolicy policy) {
+        this.policyMappings.add(new PolicyMapping(listenerType, policy));
+    }
+
+    /**
+     * 执行有超时配置的监听器的线程池，不能和调用分发器的线程池是同一个，否则可能互相等待
+     */
+    public void setTimeoutExecutor(Executor timeoutExecutor) {
+        this.timeoutExecutor = timeoutExecutor;
+    }
+
+    @Override
+    public void dispatch(ApplicationEvent event, ApplicationListener[] listeners, ApplicationListenerInvoker invoker) {
+        purgeStaleGuards();
+        ApplicationListenerInvoker guardingInvoker = new GuardingInvoker(invoker);
+        if (this.delegate != null) {
+            this.delegate.dispatch(event, listeners, guardingInvoker);
+        } else {
+            for (ApplicationListener listener : listeners) {
+                guardingInvoker.invokeListener(listener, event);
+            }
+        }
+    }
+
+    @Override
+    public long getPendingEventCount() {
+        return (this.delegate != null ? this.delegate.getPendingEventCount() : 0);
+    }
+
+    private ListenerGuard getGuard(ApplicationListener listener) {
+        ListenerGuard guard = this.guards.get(new GuardKey(listener, null));
+        if (guard == null) {
+            ListenerGuard newGuard = new ListenerGuard(resolvePolicy(listener));
+            guard = this.guards.putIfAbsent(new GuardKey(listener, this.staleGuardQueue), newGuard);
+            if (guard == null) {
+                guard = newGuard;
+            }
+        }
+        return guard;
+    }
+
+    private void purgeStaleGuards() {
+        Reference<? extends ApplicationListener> stale;
+        while ((stale = this.staleGuardQueue.poll()) != null) {
+            this.guards.remove(stale);
+        }
+    }
+
+    private ListenerGuardPolicy resolvePolicy(ApplicationListener listener) {
+        for (PolicyMapping mapping : this.policyMappings) {
+            if (mapping.listenerType.isInstance(listener)) {
+                return mapping.policy;
+            }
+        }
+        return this.defaultPolicy;
+    }
+
+    //监听器当前的熔断状态，还没调用过的是CLOSED
+    public CircuitState getCircuitState(ApplicationListener listener) {
+        ListenerGuard guard = this.guards.get(new GuardKey(listener, null));
+        return (guard != null ? guard.state.get() : CircuitState.CLOSED);
+    }
+
+    //失败的调用次数，包括抛出异常和超时
+    public long getFailureCount() {
+        return this.failureCount.sum();
+    }
+
+    //执行成功但超过slowCallMillis的次数
+    public long getSlowCallCount() {
+        return this.slowCallCount.sum();
+    }
+
+    //超时的次数：有timeoutExecutor时是不再等待的次数，没有时是事后发现执行超过timeoutMillis的次数
+    public long getTimeoutCount() {
+        return this.timeoutCount.sum();
+    }
+
+    //舱壁已满被跳过的次数
+    public long getBulkheadRejectedCount() {
+        return this.bulkheadRejectedCount.sum();
+    }
+
+    //熔断中被跳过的次数
+    public long getShortCircuitedCount() {
+        return this.shortCircuitedCount.sum();
+    }
+
+    //CLOSED/HALF_OPEN -> OPEN的次数
+    public long getCircuitOpenedCount() {
+        return this.circuitOpenedCount.sum();
+    }
+
+    //OPEN -> HALF_OPEN的次数
+    public long getCircuitHalfOpenedCount() {
+        return this.circuitHalfOpenedCount.sum();
+    }
+
+    //HALF_OPEN -> CLOSED的次数
+    public long getCircuitClosedCount() {
+        return this.circuitClosedCount.sum();
+    }
+
+
+    /**
+     * 包装原来的回调，在调用前后做保护：
+     * 异步发布时原来的回调是ListenerCompletionTracker，它会吞掉监听器的异常，
+     * 这时绕过它直接调用监听器，熔断按监听器自己的结果计算，再由这里向它上报结果
+     */
+    private final class GuardingInvoker implements ApplicationListenerInvoker {
+
+        private final ApplicationListenerInvoker target;
+
+        private final ListenerCompletionTracker tracker;
+
+        GuardingInvoker(ApplicationListenerInvoker target) {
+            this.target = target;
+            this.tracker = (target instanceof ListenerCompletionTracker ? (ListenerCompletionTracker) target : null);
+        }
+
+        @Override
+        public void invokeListener(ApplicationListener listener, ApplicationEvent event) {
+            ListenerGuard guard = getGuard(listener);
+            if (!guard.tryEnter()) {
+                shortCircuitedCount.increment();
+                discard(listener, event);
+                return;
+            }
+            if (guard.permits != null && !guard.permits.tryAcquire()) {
+                guard.cancelTrial();
+                bulkheadRejectedCount.increment();
+                discard(listener, event);
+                return;
+            }
+            ListenerGuardPolicy policy = guard.policy;
+            if (policy.getTimeoutMillis() > 0 && timeoutExecutor != null) {
+                invokeWithTimeout(guard, listener, event);
+            } else {
+                long start = System.nanoTime();
+                Throwable failure = null;
+                try {
+                    failure = invokeTarget(listener, event);
+                } catch (Throwable ex) {
+                    failure = ex;
+                    throw ex;
+                } finally {
+                    if (guard.permits != null) {
+                        guard.permits.release();
+                    }
+                    long durationNanos = System.nanoTime() - start;
+                    boolean success = (failure == null);
+                    //没有timeoutExecutor，不能提前放弃，只能事后把超时的调用计为失败
+                    if (success && policy.getTimeoutMillis() > 0 &&
+                            durationNanos > TimeUnit.MILLISECONDS.toNanos(policy.getTimeoutMillis())) {
+                        timeoutCount.increment();
+                        success = false;
+                    }
+                    callFinished(guard, success, durationNanos);
+                    reportFinished(failure);
+                }
+            }
+        }
+
+        /**
+         * 在timeoutExecutor中执行，最多等待timeoutMillis：
+         * 1. 舱壁名额在监听器真正结束时才释放，所以一直卡住的监听器最多占用maxConcurrentCalls个线程；
+         * 还没开始就被取消的任务不会执行，名额在done()中释放
+         * 2. 超时跳过和监听器真正结束都可能上报结果，谁先抢到reported谁上报，另一个不再上报
+         */
+        private void invokeWithTimeout(ListenerGuard guard, final ApplicationListener listener,
+                                       final ApplicationEvent event) {
+            final Semaphore permits = guard.permits;
+            //监听器开始执行或者任务在开始前被取消，两者只会发生一个，由它负责释放名额
+            final AtomicBoolean started = new AtomicBoolean();
+            final AtomicBoolean reported = new AtomicBoolean();
+            FutureTask<Throwable> task = new FutureTask<Throwable>(new Callable<Throwable>() {
+                public Throwable call() {
+                    if (!started.compareAndSet(false, true)) {
+                        return null;
+                    }
+                    Throwable failure = null;
+                    try {
+                        failure = invokeTarget(listener, event);
+                    } catch (Throwable ex) {
+                        failure = ex;
+                        throw ex;
+                    } finally {
+                        if (permits != null) {
+                            permits.release();
+                        }
+                        if (reported.compareAndSet(false, true)) {
+                            reportFinished(failure);
+                        }
+                    }
+                    return failure;
+                }
+            }) {
+                @Override
+                protected void done() {
+                    if (isCancelled() && started.compareAndSet(false, true) && permits != null) {
+                        permits.release();
+                    }
+                }
+            };
+            long start = System.nanoTime();
+            try {
+                timeoutExecutor.execute(task);
+            } catch (RuntimeException ex) {
+                if (permits != null) {
+                    permits.release();
+                }
+                guard.cancelTrial();
+                throw ex;
+            }
+            try {
+                Throwable failure = task.get(guard.policy.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+                callFinished(guard, failure == null, System.nanoTime() - start);
+            } catch (TimeoutException ex) {
+                task.cancel(true);
+                timeoutCount.increment();
+                callFinished(guard, false, System.nanoTime() - start);
+                if (reported.compareAndSet(false, true)) {
+                    discard(listener, event);
+                }
+            } catch (InterruptedException ex) {
+                //发布线程被中断，不再等待，也不算监听器的失败
+                Thread.currentThread().interrupt();
+                task.cancel(true);
+                guard.cancelTrial();
+                if (reported.compareAndSet(false, true)) {
+                    discard(listener, event);
+                }
+            } catch (ExecutionException ex) {
+                callFinished(guard, false, System.nanoTime() - start);
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException("Listener invocation failed", cause);
+            }
+        }
+
+        /**
+         * 调用监听器：有tracker时绕过它，返回监听器抛出的异常；否则交给target，异常照常抛出
+         */
+        private Throwable invokeTarget(ApplicationListener listener, ApplicationEvent event) {
+            if (this.tracker != null) {
+                return this.tracker.invokeUntracked(listener, event);
+            }
+            this.target.invokeListener(listener, event);
+            return null;
+        }
+
+        //有tracker时由这里上报监听器的结果；没有tracker时异常已经抛给了调用方
+        private void reportFinished(Throwable failure) {
+            if (this.tracker != null) {
+                this.tracker.listenerFinished(failure);
+            }
+        }
+
+        private void callFinished(ListenerGuard guard, boolean success, long durationNanos) {
+            if (!success) {
+                failureCount.increment();
+                guard.onFailure();
+                return;
+            }
+            long slowCallMillis = guard.policy.getSlowCallMillis();
+            if (slowCallMillis > 0 && durationNanos > TimeUnit.MILLISECONDS.toNanos(slowCallMillis)) {
+                slowCallCount.increment();
+                guard.onFailure();
+            } else {
+                guard.onSuccess();
+            }
+        }
+
+        private void discard(ApplicationListener listener, ApplicationEvent event) {
+            this.target.listenersDiscarded(new ApplicationListener[] {listener}, event);
+        }
+
+        @Override
+        public void listenersDiscarded(ApplicationListener[] listeners, ApplicationEvent event) {
+            this.target.listenersDiscarded(listeners, event);
+        }
+    }
+
+
+    /**
+     * 单个监听器的舱壁和熔断状态
+     */
+    private final class ListenerGuard {
+
+        final ListenerGuardPolicy policy;
+
+        //舱壁，null表示不限制
+        final Semaphore permits;
+
+        final AtomicReference<CircuitState> state = new AtomicReference<CircuitState>(CircuitState.CLOSED);
+
+        final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+        //半开状态下是否已经有试探调用在执行
+        final AtomicBoolean trialInFlight = new AtomicBoolean();
+
+        volatile long openedAt;
+
+        ListenerGuard(ListenerGuardPolicy policy) {
+            this.policy = policy;
+            this.permits = (policy.getMaxConcurrentCalls() > 0 ? new Semaphore(policy.getMaxConcurrentCalls()) : null);
+        }
+
+        /**
+         * 是否允许这次调用：关闭状态直接允许；熔断时间已过则转为半开，只允许一个试探调用
+         */
+        boolean tryEnter() {
+            CircuitState current = this.state.get();
+            if (current == CircuitState.CLOSED) {
+                return true;
+            }
+            if (current == CircuitState.OPEN) {
+                if (System.currentTimeMillis() - this.openedAt < this.policy.getOpenMillis()) {
+                    return false;
+                }
+                if (this.state.compareAndSet(CircuitState.OPEN, CircuitState.HALF_OPEN)) {
+                    circuitHalfOpenedCount.increment();
+                }
+            }
+            return (this.state.get() != CircuitState.OPEN && this.trialInFlight.compareAndSet(false, true));
+        }
+
+        //试探调用没有真正执行(舱壁已满等)，把机会留给下一次
+        void cancelTrial() {
+            if (this.state.get() == CircuitState.HALF_OPEN) {
+                this.trialInFlight.set(false);
+            }
+        }
+
+        void onSuccess() {
+            this.consecutiveFailures.set(0);
+            if (this.state.compareAndSet(CircuitState.HALF_OPEN, CircuitState.CLOSED)) {
+                this.trialInFlight.set(false);
+                circuitClosedCount.increment();
+            }
+        }
+
+        void onFailure() {
+            if (this.state.get() == CircuitState.HALF_OPEN) {
+                open(CircuitState.HALF_OPEN);
+                return;
+            }
+            int threshold = this.policy.getFailureThreshold();
+            if (threshold > 0 && this.consecutiveFailures.incrementAndGet() >= threshold) {
+                open(CircuitState.CLOSED);
+            }
+        }
+
+        private void open(CircuitState from) {
+            if (this.state.get() != from) {
+                return;
+            }
+            //先设置时间再切换状态，看到OPEN的线程一定能看到对应的openedAt
+            this.openedAt = System.currentTimeMillis();
+            if (this.state.compareAndSet(from, CircuitState.OPEN)) {
+                this.consecutiveFailures.set(0);
+                this.trialInFlight.set(false);
+                circuitOpenedCount.increment();
+            }
+        }
+    }
+
+
+    /**
+     * guards的key：弱引用监听器，按identity比较；查找时用不带队列的临时key，和已经放进去的key比较引用的监听器
+     */
+    private static final class GuardKey extends WeakReference<ApplicationListener> {
+
+        private final int hash;
+
+        GuardKey(ApplicationListener listener, ReferenceQueue<ApplicationListener> queue) {
+            super(listener, queue);
+            this.hash = System.identityHashCode(listener);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof GuardKey)) {
+                return false;
+            }
+            ApplicationListener listener = get();
+            return (listener != null && listener == ((GuardKey) other).get());
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+
+    private static final class PolicyMapping {
+
+        final Class<?> listenerType;
+
+        final ListenerGuardPolicy policy;
+
+        PolicyMapping(Class<?> listenerType, ListenerGuardPolicy policy) {
+            Assert.notNull(listenerType, "Listener type must not be null");
+            Assert.notNull(policy, "ListenerGuardPolicy must not be null");
+            this.listenerType = listenerType;
+            this.policy = policy;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.springframework.context.event;
+
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 跟踪一次异步发布中每个监听器的结束，最后一个结束时完成future：
+ * 1. 自己也是一个ApplicationListenerInvoker，调用委托给delegate，异常不往外抛，而是记录下来
+ * 2. 被丢弃的监听器也算结束，记为失败，保证future一定会完成
+ * 3. 包装它的分发器(例如GuardedEventDispatcher)需要知道监听器自己的结果时，
+ * 用invokeUntracked调用，再自己调用listenerFinished上报，每个监听器只能上报一次
+ * @see ApplicationEventMulticaster#multicastEventAsync
+ */
+class ListenerCompletionTracker implements ApplicationListenerInvoker {
+
+    private final ApplicationEvent event;
+
+    private final ApplicationListenerInvoker delegate;
+
+    private final AtomicInteger remaining;
+
+    private final Queue<Throwable> failures = new ConcurrentLinkedQueue<Throwable>();
+
+    final CompletableFuture<Void> future = new CompletableFuture<Void>();
+
+    ListenerCompletionTracker(ApplicationEvent event, int listenerCount, ApplicationListenerInvoker delegate) {
+        this.event = event;
+        this.delegate = delegate;
+        this.remaining = new AtomicInteger(listenerCount);
+        if (listenerCount == 0) {
+            this.future.complete(null);
+        }
+    }
+
+    @Override
+    public void invokeListener(ApplicationListener listener, ApplicationEvent event) {
+        listenerFinished(invokeUntracked(listener, event));
+    }
+
+    //只调用不上报，返回监听器抛出的异常，成功返回null
+    Throwable invokeUntracked(ApplicationListener listener, ApplicationEvent event) {
+        try {
+            this.delegate.invokeListener(listener, event);
+            return null;
+        } catch (Throwable ex) {
+            return ex;
+        }
+    }
+
+    @Override
+    public void listenersDiscarded(ApplicationListener[] listeners, ApplicationEvent event) {
+        for (ApplicationListener listener : listeners) {
+            listenerFinished(new RejectedExecutionException(
+                    "Listener [" + listener + "] discarded by event dispatcher for event " + event));
+        }
+    }
+
+    void listenerFinished(Throwable failure) {
+        if (failure != null) {
+            this.failures.add(failure);
+        }
+        if (this.remaining.decrementAndGet() == 0) {
+            complete();
+        }
+    }
+
+    void abort(Throwable failure) {
+        this.failures.add(failure);
+        complete();
+    }
+
+    private void complete() {
+        if (this.failures.isEmpty()) {
+            this.future.complete(null);
+        } else {
+            this.future.completeExceptionally(
+                    new EventPublicationException(this.event, new ArrayList<Throwable>(this.failures)));
+        }
+    }
+}
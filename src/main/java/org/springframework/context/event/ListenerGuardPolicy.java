@@ -0,0 +1,74 @@
+package org.springframework.context.event;
+
+import org.springframework.util.Assert;
+
+/**
+ * 单个监听器的保护配置，由GuardedEventDispatcher使用，所有项默认都是关闭的：
+ * 1. timeoutMillis：超过这个时间就不再等待，需要给分发器设置timeoutExecutor才能真正中断等待
+ * 2. maxConcurrentCalls：同一个监听器同时执行的最大数量(舱壁)，超过的调用直接跳过
+ * 3. failureThreshold：连续失败(异常，超时，慢调用)多少次后熔断，熔断期间的调用直接跳过
+ * 4. slowCallMillis：执行超过这个时间，即使成功也记为一次失败
+ * 5. openMillis：熔断持续时间，之后放行一次试探调用，成功则恢复，失败则继续熔断
+ * @see GuardedEventDispatcher
+ */
+public class ListenerGuardPolicy {
+
+    private long timeoutMillis = 0;
+
+    private int maxConcurrentCalls = 0;
+
+    private int failureThreshold = 0;
+
+    private long slowCallMillis = 0;
+
+    private long openMillis = 30000;
+
+    //0表示不限制
+    public void setTimeoutMillis(long timeoutMillis) {
+        Assert.state(timeoutMillis >= 0, "'timeoutMillis' must not be negative");
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public long getTimeoutMillis() {
+        return this.timeoutMillis;
+    }
+
+    //0表示不限制
+    public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+        Assert.state(maxConcurrentCalls >= 0, "'maxConcurrentCalls' must not be negative");
+        this.maxConcurrentCalls = maxConcurrentCalls;
+    }
+
+    public int getMaxConcurrentCalls() {
+        return this.maxConcurrentCalls;
+    }
+
+    //0表示不熔断
+    public void setFailureThreshold(int failureThreshold) {
+        Assert.state(failureThreshold >= 0, "'failureThreshold' must not be negative");
+        this.failureThreshold = failureThreshold;
+    }
+
+    public int getFailureThreshold() {
+        return this.failureThreshold;
+    }
+
+    //0表示不统计慢调用
+    public void setSlowCallMillis(long slowCallMillis) {
+        Assert.state(slowCallMillis >= 0, "'slowCallMillis' must not be negative");
+        this.slowCallMillis = slowCallMillis;
+    }
+
+    public long getSlowCallMillis() {
+        return this.slowCallMillis;
+    }
+
+    public void setOpenMillis(long openMillis) {
+        Assert.state(openMillis > 0, "'openMillis' must be positive");
+        this.openMillis = openMillis;
+    }
+
+    public long getOpenMillis() {
+        return this.openMillis;
+    }
+}
@@ -0,0 +1,197 @@
+package org.springframework.context.event;
+
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.util.Assert;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 类似actor的分发器：每个监听器有一个自己的邮箱(mailbox)，事件先放进邮箱，再由共享的Executor来消费
+ * 1. 同一个邮箱同一时间最多只有一个线程在消费，所以同一个监听器看到的事件顺序和发布顺序一致
+ * 2. 不同监听器的邮箱可以被不同线程同时消费，监听器之间是并行的，但不需要为每个监听器准备一个线程
+ * 3. 每次调度最多处理batchSize个事件，处理完还有剩余就重新提交给Executor，避免一个繁忙的监听器一直占着线程
+ * 4. 邮箱在有事件时创建，处理完变空后就移除，不会一直持有已经移除的(或者弱引用注册的)监听器；
+ * 移除之后再来的事件放进新的邮箱，旧邮箱已经处理完，所以顺序不受影响
+ * 5. 调度被线程池拒绝时，由拿到调度权的线程(工作线程或者发布线程)直接处理邮箱，
+ * 邮箱中的事件(包括别的发布者放进来的)不会因为没有线程调度而一直留在里面
+ */
+public class MailboxEventDispatcher implements ApplicationEventDispatcher {
+
+    private final Executor executor;
+
+    private int batchSize = 64;
+
+    private final ConcurrentMap<ApplicationListener, Mailbox> mailboxes =
+            new ConcurrentHashMap<ApplicationListener, Mailbox>();
+
+    //所有邮箱中还未处理的事件总数
+    private final LongAdder pendingCount = new LongAdder();
+
+    /**
+     * @param executor 消费邮箱的共享线程池
+     */
+    public MailboxEventDispatcher(Executor executor) {
+        Assert.notNull(executor, "Executor must not be null");
+        this.executor = executor;
+    }
+
+    public void setBatchSize(int batchSize) {
+        Assert.state(batchSize > 0, "'batchSize' must be positive");
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    @Override
+    public void dispatch(ApplicationEvent event, ApplicationListener[] listeners, ApplicationListenerInvoker invoker) {
+        for (ApplicationListener listener : listeners) {
+            Message message = new Message(event, invoker);
+            //拿到的邮箱刚好被移除的话重新取一个
+            while (!getMailbox(listener).enqueue(message)) {
+            }
+        }
+    }
+
+    private Mailbox getMailbox(ApplicationListener listener) {
+        Mailbox mailbox = this.mailboxes.get(listener);
+        if (mailbox == null) {
+            Mailbox newMailbox = new Mailbox(listener);
+            mailbox = this.mailboxes.putIfAbsent(listener, newMailbox);
+            if (mailbox == null) {
+                mailbox = newMailbox;
+            }
+        }
+        return mailbox;
+    }
+
+    //所有邮箱中还未处理的事件总数
+    @Override
+    public long getPendingEventCount() {
+        return this.pendingCount.sum();
+    }
+
+    //当前有事件(或者正在处理)的邮箱数
+    public int getMailboxCount() {
+        return this.mailboxes.size();
+    }
+
+
+    private static final class Message {
+
+        final ApplicationEvent event;
+
+        final ApplicationListenerInvoker invoker;
+
+        Message(ApplicationEvent event, ApplicationListenerInvoker invoker) {
+            this.event = event;
+            this.invoker = invoker;
+        }
+    }
+
+
+    /**
+     * 单个监听器的邮箱，scheduled保证同一时间只有一个消费任务在Executor中；
+     * retired表示已经从map中移除，不再接收事件，入队和移除在邮箱上同步
+     */
+    private final class Mailbox implements Runnable {
+
+        private final ApplicationListener listener;
+
+        private final Queue<Message> messages = new ConcurrentLinkedQueue<Message>();
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private boolean retired;
+
+        Mailbox(ApplicationListener listener) {
+            this.listener = listener;
+        }
+
+        //邮箱已经被移除时返回false，由调用方换一个邮箱
+        boolean enqueue(Message message) {
+            synchronized (this) {
+                if (this.retired) {
+                    return false;
+                }
+                this.messages.offer(message);
+            }
+            pendingCount.increment();
+            schedule();
+            return true;
+        }
+
+        private void schedule() {
+            if (this.scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RuntimeException ex) {
+                    //线程池拒绝了：邮箱中可能还有别的事件(工作线程刚好把调度交给了这里)，只撤回自己的事件不够；
+                    //当前线程已经拿到调度权，直接在这里处理，和工作线程被拒绝时一样
+                    run();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    processBatch();
+                } finally {
+                    this.scheduled.set(false);
+                }
+                if (retireIfIdle()) {
+                    return;
+                }
+                //本批没处理完的，或者释放之后才入队的，需要重新调度；别的线程已经调度了就交给它
+                if (!this.scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+                try {
+                    executor.execute(this);
+                    return;
+                } catch (RuntimeException ex) {
+                    //线程池拒绝了，当前线程本来就是线程池的，继续处理下一批
+                }
+            }
+        }
+
+        private void processBatch() {
+            for (int i = 0; i < batchSize; i++) {
+                Message message = this.messages.poll();
+                if (message == null) {
+                    break;
+                }
+                pendingCount.decrement();
+                try {
+                    message.invoker.invokeListener(this.listener, message.event);
+                } catch (Throwable ex) {
+                    //一个事件处理失败不影响该邮箱后面的事件
+                    Thread current = Thread.currentThread();
+                    current.getUncaughtExceptionHandler().uncaughtException(current, ex);
+                }
+            }
+        }
+
+        //没有事件也没有别的线程调度时移除自己，之后的事件会进入新的邮箱
+        private boolean retireIfIdle() {
+            synchronized (this) {
+                if (!this.messages.isEmpty() || this.scheduled.get()) {
+                    return false;
+                }
+                this.retired = true;
+            }
+            mailboxes.remove(this.listener, this);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,437 @@
+package org.springframework.context.event;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.util.Assert;
+import org.springframework.util.CustomizableThreadCreator;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 基于预分配环形缓冲区(类似disruptor)的multicaster，适合事件量非常大的场景：
+ * 1. 缓冲区中的槽在初始化时就创建好，发布事件只是把事件和监听器快照写进槽里，不为每个监听器创建Runnable，也没有锁
+ * 2. 多个发布线程通过CAS争抢序号(multi-producer)，写完槽以后在availableBuffer中标记该序号已发布
+ * 3. 消费线程各自记录处理到的序号，每次把所有已发布的序号一次处理完(批量消费)，只在批次结束时更新一次序号
+ * 4. 缓冲区满了(最慢的消费线程还没处理完一圈)时发布线程park等待，WaitStrategy只决定消费线程空闲时的等待方式，
+ * BUSY_SPIN会一直占用CPU，只适合消费线程数小于空闲核数的机器
+ * 5. consumerCount大于1时，监听器按identityHashCode分给不同的消费线程，同一个监听器始终在同一个线程中按发布顺序执行
+ * 6. 监听器抛出的异常交给消费线程的UncaughtExceptionHandler，不影响后续事件
+ * 7. destroy之后发布事件抛出IllegalStateException(异步发布时future以它结束)，不会写进没有消费线程处理的槽里
+ * 8. 把它注册为名为applicationEventMulticaster的bean，AbstractApplicationContext就会用它代替SimpleApplicationEventMulticaster
+ */
+public class RingBufferApplicationEventMulticaster extends AbstractApplicationEventMulticaster
+        implements DisposableBean {
+
+    /**
+     * 消费线程没有事件可处理时的等待方式
+     */
+    public enum WaitStrategy {
+
+        //一直自旋，延迟最低，但会一直占满一个CPU
+        BUSY_SPIN {
+            @Override
+            void idle(int counter, long parkNanos) {
+            }
+        },
+
+        //自旋一段时间后让出CPU
+        YIELD {
+            @Override
+            void idle(int counter, long parkNanos) {
+                if (counter > SPIN_TRIES) {
+                    Thread.yield();
+                }
+            }
+        },
+
+        //自旋，让出CPU，最后park一小段时间，空闲时几乎不占CPU
+        PARK {
+            @Override
+            void idle(int counter, long parkNanos) {
+                if (counter > SPIN_TRIES + YIELD_TRIES) {
+                    LockSupport.parkNanos(parkNanos);
+                } else if (counter > SPIN_TRIES) {
+                    Thread.yield();
+                }
+            }
+        };
+
+        private static final int SPIN_TRIES = 100;
+
+        private static final int YIELD_TRIES = 100;
+
+        /**
+         * @param counter 本次连续等待的次数，从0开始
+         */
+        abstract void idle(int counter, long parkNanos);
+    }
+
+    private static final ApplicationListener[] NO_LISTENERS = new ApplicationListener[0];
+
+    private int bufferSize = 1024;
+
+    private int consumerCount = 1;
+
+    private WaitStrategy waitStrategy = WaitStrategy.PARK;
+
+    private long parkNanos = 100000;
+
+    //destroy时最多等待消费线程处理完剩余事件的时间，0表示不等待
+    private long awaitTerminationMillis = 0;
+
+    private final CustomizableThreadCreator threadCreator =
+            new CustomizableThreadCreator("RingBufferApplicationEventMulticaster-");
+
+    private Slot[] entries;
+
+    private int indexMask;
+
+    private int indexShift;
+
+    //每个槽当前发布的是第几圈，用来判断某个序号是否已经写完
+    private AtomicIntegerArray availableBuffer;
+
+    //已经被发布线程申请到的最大序号
+    private final AtomicLong cursor = new AtomicLong(-1);
+
+    //最慢的消费线程序号的缓存，避免每次申请都遍历所有消费线程
+    private final AtomicLong gatingSequenceCache = new AtomicLong(-1);
+
+    private Consumer[] consumers;
+
+    private volatile boolean running;
+
+    private volatile boolean shutdown;
+
+    public RingBufferApplicationEventMulticaster() {
+        this.threadCreator.setDaemon(true);
+    }
+
+    /**
+     * 缓冲区大小，必须是2的幂，初始化之后修改无效
+     */
+    public void setBufferSize(int bufferSize) {
+        Assert.state(bufferSize > 0 && Integer.bitCount(bufferSize) == 1, "'bufferSize' must be a power of 2");
+        this.bufferSize = bufferSize;
+    }
+
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    public void setConsumerCount(int consumerCount) {
+        Assert.state(consumerCount > 0, "'consumerCount' must be positive");
+        this.consumerCount = consumerCount;
+    }
+
+    public void setWaitStrategy(WaitStrategy waitStrategy) {
+        Assert.notNull(waitStrategy, "WaitStrategy must not be null");
+        this.waitStrategy = waitStrategy;
+    }
+
+    //PARK策略每次park的纳秒数
+    public void setParkNanos(long parkNanos) {
+        Assert.state(parkNanos > 0, "'parkNanos' must be positive");
+        this.parkNanos = parkNanos;
+    }
+
+    public void setAwaitTerminationMillis(long awaitTerminationMillis) {
+        this.awaitTerminationMillis = awaitTerminationMillis;
+    }
+
+    public void setThreadNamePrefix(String threadNamePrefix) {
+        this.threadCreator.setThreadNamePrefix(threadNamePrefix);
+    }
+
+    //消费线程默认是守护线程
+    public void setDaemon(boolean daemon) {
+        this.threadCreator.setDaemon(daemon);
+    }
+
+    /**
+     * 分配缓冲区并启动消费线程，可以提前调用，否则第一次发布时自动调用
+     */
+    public synchronized void initialize() {
+        if (this.shutdown) {
+            throw new IllegalStateException("RingBufferApplicationEventMulticaster has already been shut down");
+        }
+        if (this.running) {
+            return;
+        }
+        Slot[] entries = new Slot[this.bufferSize];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = new Slot();
+        }
+        this.entries = entries;
+        this.indexMask = this.bufferSize - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(this.bufferSize);
+        this.availableBuffer = new AtomicIntegerArray(this.bufferSize);
+        for (int i = 0; i < this.bufferSize; i++) {
+            this.availableBuffer.set(i, -1);
+        }
+        Consumer[] consumers = new Consumer[this.consumerCount];
+        for (int i = 0; i < consumers.length; i++) {
+            consumers[i] = new Consumer(i, consumers.length);
+        }
+        this.consumers = consumers;
+        this.running = true;
+        for (Consumer consumer : consumers) {
+            consumer.thread = this.threadCreator.createThread(consumer);
+            consumer.thread.start();
+        }
+    }
+
+    @Override
+    public void multicastEvent(ApplicationEvent event) {
+        EventDispatchInstrumentation instrumentation = getInstrumentation();
+        if (instrumentation != null) {
+            instrumentation.eventPublished(event);
+        }
+        ApplicationListener[] listeners = getApplicationListenerArray(event);
+        if (listeners.length == 0) {
+            return;
+        }
+        long sequence = claim(1);
+        this.entries[(int) sequence & this.indexMask].set(event, listeners, getListenerInvoker());
+        publish(sequence, sequence);
+    }
+
+    /**
+     * 同一组事件一次申请一段连续的序号，超过缓冲区大小时分段申请
+     */
+    @Override
+    protected void multicastEventGroup(List<ApplicationEvent> events, ApplicationListener[] listeners) {
+        ApplicationListenerInvoker invoker = getListenerInvoker();
+        int index = 0;
+        while (index < events.size()) {
+            int n = Math.min(events.size() - index, this.bufferSize);
+            long hi = claim(n);
+            long lo = hi - n + 1;
+            for (long sequence = lo; sequence <= hi; sequence++) {
+                this.entries[(int) sequence & this.indexMask].set(events.get(index++), listeners, invoker);
+            }
+            publish(lo, hi);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> multicastEventAsync(ApplicationEvent event) {
+        EventDispatchInstrumentation instrumentation = getInstrumentation();
+        if (instrumentation != null) {
+            instrumentation.eventPublished(event);
+        }
+        ApplicationListener[] listeners = getApplicationListenerArray(event);
+        ListenerCompletionTracker tracker =
+                new ListenerCompletionTracker(event, listeners.length, getListenerInvoker());
+        if (listeners.length == 0) {
+            return tracker.future;
+        }
+        long sequence;
+        try {
+            sequence = claim(1);
+        } catch (IllegalStateException ex) {
+            tracker.abort(ex);
+            return tracker.future;
+        }
+        this.entries[(int) sequence & this.indexMask].set(event, listeners, tracker);
+        publish(sequence, sequence);
+        return tracker.future;
+    }
+
+    /**
+     * 申请n个连续的序号，返回其中最大的一个；缓冲区没有足够空位时按等待策略等待
+     */
+    private long claim(int n) {
+        if (!this.running) {
+            initialize();
+        }
+        while (true) {
+            long current = this.cursor.get();
+            long next = current + n;
+            long wrapPoint = next - this.bufferSize;
+            long cachedGating = this.gatingSequenceCache.get();
+            if (wrapPoint > cachedGating || cachedGating > current) {
+                long gating = minimumConsumerSequence(current);
+                if (wrapPoint > gating) {
+                    if (this.shutdown) {
+                        throw new IllegalStateException("RingBufferApplicationEventMulticaster has been shut down");
+                    }
+                    //和等待策略无关，发布线程总是park一下把CPU让给消费线程
+                    LockSupport.parkNanos(1);
+                    continue;
+                }
+                this.gatingSequenceCache.set(gating);
+            } else if (this.cursor.compareAndSet(current, next)) {
+                if (this.shutdown) {
+                    //申请到之后才发现已经关闭，消费线程可能已经退出；序号已经占用，写入空槽后放弃
+                    for (long sequence = current + 1; sequence <= next; sequence++) {
+                        this.entries[(int) sequence & this.indexMask].set(null, NO_LISTENERS, null);
+                    }
+                    publish(current + 1, next);
+                    throw new IllegalStateException("RingBufferApplicationEventMulticaster has been shut down");
+                }
+                return next;
+            }
+        }
+    }
+
+    /**
+     * 标记[lo, hi]已经写完，volatile写保证消费线程看到标记时也能看到槽中的内容
+     */
+    private void publish(long lo, long hi) {
+        for (long sequence = lo; sequence <= hi; sequence++) {
+            this.availableBuffer.set((int) sequence & this.indexMask, (int) (sequence >>> this.indexShift));
+        }
+    }
+
+    private boolean isAvailable(long sequence) {
+        return this.availableBuffer.get((int) sequence & this.indexMask) == (int) (sequence >>> this.indexShift);
+    }
+
+    /**
+     * 从lo开始连续已发布的最大序号；发布线程申请的顺序和写完的顺序不一定一致，所以遇到没写完的就停下
+     */
+    private long highestPublishedSequence(long lo, long available) {
+        for (long sequence = lo; sequence <= available; sequence++) {
+            if (!isAvailable(sequence)) {
+                return sequence - 1;
+            }
+        }
+        return available;
+    }
+
+    private long minimumConsumerSequence(long minimum) {
+        for (Consumer consumer : this.consumers) {
+            minimum = Math.min(minimum, consumer.sequence.get());
+        }
+        return minimum;
+    }
+
+    //已发布但还没被所有消费线程处理完的事件数
+    @Override
+    protected long getPendingEventCount() {
+        if (!this.running) {
+            return 0;
+        }
+        long current = this.cursor.get();
+        return current - minimumConsumerSequence(current);
+    }
+
+    /**
+     * 不再接收新事件，消费线程处理完缓冲区中剩余的事件后退出
+     */
+    @Override
+    public void destroy() {
+        Consumer[] consumers;
+        synchronized (this) {
+            this.shutdown = true;
+            if (!this.running) {
+                return;
+            }
+            this.running = false;
+            consumers = this.consumers;
+        }
+        if (this.awaitTerminationMillis > 0) {
+            long deadline = System.currentTimeMillis() + this.awaitTerminationMillis;
+            try {
+                for (Consumer consumer : consumers) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    consumer.thread.join(remaining);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+
+    /**
+     * 缓冲区中的一个槽，只在发布线程申请到序号后写入，由availableBuffer的volatile读写保证可见性
+     */
+    private static final class Slot {
+
+        ApplicationEvent event;
+
+        ApplicationListener[] listeners;
+
+        ApplicationListenerInvoker invoker;
+
+        void set(ApplicationEvent event, ApplicationListener[] listeners, ApplicationListenerInvoker invoker) {
+            this.event = event;
+            this.listeners = listeners;
+            this.invoker = invoker;
+        }
+    }
+
+
+    /**
+     * 消费线程，只调用分配给自己的监听器
+     */
+    private final class Consumer implements Runnable {
+
+        private final int index;
+
+        private final int count;
+
+        //已经处理完的最大序号
+        final AtomicLong sequence = new AtomicLong(-1);
+
+        Thread thread;
+
+        Consumer(int index, int count) {
+            this.index = index;
+            this.count = count;
+        }
+
+        @Override
+        public void run() {
+            long next = this.sequence.get() + 1;
+            int counter = 0;
+            while (true) {
+                long available = cursor.get();
+                if (available >= next) {
+                    long highest = highestPublishedSequence(next, available);
+                    if (highest >= next) {
+                        for (long sequence = next; sequence <= highest; sequence++) {
+                            process(entries[(int) sequence & indexMask]);
+                        }
+                        //一批只更新一次序号
+                        this.sequence.set(highest);
+                        next = highest + 1;
+                        counter = 0;
+                        continue;
+                    }
+                } else if (shutdown && cursor.get() < next) {
+                    //看到关闭后再确认一次没有新申请的序号；之后才申请成功的发布线程一定能看到关闭，会自己放弃
+                    return;
+                }
+                waitStrategy.idle(counter++, parkNanos);
+            }
+        }
+
+        private void process(Slot slot) {
+            ApplicationEvent event = slot.event;
+            ApplicationListenerInvoker invoker = slot.invoker;
+            for (ApplicationListener listener : slot.listeners) {
+                if (this.count > 1 &&
+                        (System.identityHashCode(listener) & Integer.MAX_VALUE) % this.count != this.index) {
+                    continue;
+                }
+                try {
+                    invoker.invokeListener(listener, event);
+                } catch (Throwable ex) {
+                    Thread current = Thread.currentThread();
+                    current.getUncaughtExceptionHandler().uncaughtException(current, ex);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package org.springframework.context.event;
+
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.util.Assert;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按规则把监听器分到不同的执行通道(lane)，例如：
+ * 关键监听器同步执行，对延迟敏感的交给一个小而快的线程池，审计之类的慢监听器交给批量线程池
+ * 1. 规则按监听器类型或者事件类型匹配(isAssignableFrom)，监听器类型的规则优先，同类规则按添加顺序，第一个匹配的生效
+ * 2. 都不匹配时使用defaultExecutor；通道是SyncTaskExecutor(或者defaultExecutor为null)时在发布线程中直接调用
+ * 3. 先把需要异步的监听器全部提交出去，再在发布线程中按顺序调用同步的监听器，
+ * 同步监听器之间仍然保持Ordered的顺序，异常直接抛给发布者，和没有设置分发器时一样
+ * 4. 路由结果按(事件Class, 监听器Class)缓存，修改规则时清空
+ * 5. 某个通道拒绝了任务(RejectedExecutionException)时，只把这一个监听器通过invoker.listenersDiscarded报告为丢弃，
+ * 其他通道和同步监听器照常分发，被拒绝的次数可以通过getRejectedCount查看
+ */
+public class RoutingEventDispatcher implements ApplicationEventDispatcher {
+
+    //缓存中表示"在发布线程中执行"，ConcurrentHashMap不能存null
+    private static final Executor INLINE = new SyncTaskExecutor();
+
+    private final Executor defaultExecutor;
+
+    private final List<Route> listenerTypeRoutes = new CopyOnWriteArrayList<Route>();
+
+    private final List<Route> eventTypeRoutes = new CopyOnWriteArrayList<Route>();
+
+    //事件Class -> (监听器Class -> 通道)
+    private final ConcurrentMap<Class<?>, ConcurrentMap<Class<?>, Executor>> routeCache =
+            new ConcurrentHashMap<Class<?>, ConcurrentMap<Class<?>, Executor>>();
+
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * @param defaultExecutor 没有规则匹配时使用的通道，null表示在发布线程中执行
+     */
+    public RoutingEventDispatcher(Executor defaultExecutor) {
+        this.defaultExecutor = (defaultExecutor == null || defaultExecutor instanceof SyncTaskExecutor ?
+                INLINE : defaultExecutor);
+    }
+
+    /**
+     * 该类型(包括子类和实现类)的监听器交给executor执行
+     * @param executor 传入SyncTaskExecutor表示在发布线程中执行
+     */
+    public void addListenerTypeRoute(Class<?> listenerType, Executor executor) {
+        this.listenerTypeRoutes.add(new Route(listenerType, executor));
+        this.routeCache.clear();
+    }
+
+    /**
+     * 该类型(包括子类)的事件的监听器交给executor执行，优先级低于监听器类型的规则
+     * @param executor 传入SyncTaskExecutor表示在发布线程中执行
+     */
+    public void addEventTypeRoute(Class<? extends ApplicationEvent> eventType, Executor executor) {
+        this.eventTypeRoutes.add(new Route(eventType, executor));
+        this.routeCache.clear();
+    }
+
+    @Override
+    public void dispatch(final ApplicationEvent event, ApplicationListener[] listeners,
+                         final ApplicationListenerInvoker invoker) {
+        ConcurrentMap<Class<?>, Executor> routes = getRoutes(event.getClass());
+        Executor[] lanes = new Executor[listeners.length];
+        boolean hasInline = false;
+        for (int i = 0; i < listeners.length; i++) {
+            final ApplicationListener listener = listeners[i];
+            Executor lane = getLane(routes, event.getClass(), listener.getClass());
+            lanes[i] = lane;
+            if (lane == INLINE) {
+                hasInline = true;
+            } else {
+                try {
+                    lane.execute(new Runnable() {
+                        public void run() {
+                            invoker.invokeListener(listener, event);
+                        }
+                    });
+                } catch (RejectedExecutionException ex) {
+                    this.rejectedCount.increment();
+                    invoker.listenersDiscarded(new ApplicationListener[] {listener}, event);
+                }
+            }
+        }
+        if (hasInline) {
+            for (int i = 0; i < listeners.length; i++) {
+                if (lanes[i] == INLINE) {
+                    invoker.invokeListener(listeners[i], event);
+                }
+            }
+        }
+    }
+
+    //被通道拒绝而没有调用的监听器次数
+    public long getRejectedCount() {
+        return this.rejectedCount.sum();
+    }
+
+    private ConcurrentMap<Class<?>, Executor> getRoutes(Class<?> eventType) {
+        ConcurrentMap<Class<?>, Executor> routes = this.routeCache.get(eventType);
+        if (routes == null) {
+            ConcurrentMap<Class<?>, Executor> newRoutes = new ConcurrentHashMap<Class<?>, Executor>();
+            routes = this.routeCache.putIfAbsent(eventType, newRoutes);
+            if (routes == null) {
+                routes = newRoutes;
+            }
+        }
+        return routes;
+    }
+
+    private Executor getLane(ConcurrentMap<Class<?>, Executor> routes, Class<?> eventType, Class<?> listenerType) {
+        Executor lane = routes.get(listenerType);
+        if (lane == null) {
+            lane = resolveLane(eventType, listenerType);
+            routes.putIfAbsent(listenerType, lane);
+        }
+        return lane;
+    }
+
+    /**
+     * 真正匹配规则：监听器类型规则 -> 事件类型规则 -> 默认通道
+     */
+    protected Executor resolveLane(Class<?> eventType, Class<?> listenerType) {
+        for (Route route : this.listenerTypeRoutes) {
+            if (route.type.isAssignableFrom(listenerType)) {
+                return route.executor;
+            }
+        }
+        for (Route route : this.eventTypeRoutes) {
+            if (route.type.isAssignableFrom(eventType)) {
+                return route.executor;
+            }
+        }
+        return this.defaultExecutor;
+    }
+
+
+    private static final class Route {
+
+        final Class<?> type;
+
+        final Executor executor;
+
+        Route(Class<?> type, Executor executor) {
+            Assert.notNull(type, "Route type must not be null");
+            Assert.notNull(executor, "Executor must not be null");
+            this.type = type;
+            this.executor = (executor instanceof SyncTaskExecutor ? INLINE : executor);
+        }
+    }
+}
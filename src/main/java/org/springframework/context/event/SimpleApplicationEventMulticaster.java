@@ -3,18 +3,28 @@ package org.springframework.context.event;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
+import org.springframework.core.task.ThreadPoolTaskExecutor;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * 将事件通知给对该事件感兴趣的监听器，而监听器通常会对事件对象进行instance of检查。
  * 默认情况下，事件处理是顺序执行，如果有某个监听器阻塞了，那就会导致后面执行不了；我们也可以指定线程池进行执行，使得
- * 监听器的处理在不同的线程中执行
+ * 监听器的处理在不同的线程中执行；
+ * 还可以设置一个ApplicationEventDispatcher，由它决定整组监听器如何执行，例如有界队列的BoundedAsyncEventDispatcher，
+ * 或者保证每个监听器内部顺序的MailboxEventDispatcher，以及在ForkJoinPool中并行调用并等待完成的ForkJoinEventDispatcher
  */
 public class SimpleApplicationEventMulticaster extends AbstractApplicationEventMulticaster{
 
     private Executor taskExecutor;
 
+    private ApplicationEventDispatcher eventDispatcher;
+
     public SimpleApplicationEventMulticaster(){}
 
     /**
@@ -25,9 +35,11 @@ public class SimpleApplicationEventMulticaster extends AbstractApplicationEventM
     }
 
     /**
-     * 默认是SyncTaskExecutor，同步执行，也可以使用异步的方式，如SimpleAsyncTaskExecutor；
+     * 默认是SyncTaskExecutor，同步执行，也可以使用异步的方式，如SimpleAsyncTaskExecutor，
+     * 或者复用线程的ThreadPoolTaskExecutor；
      * @see org.springframework.core.task.SyncTaskExecutor
      * @see org.springframework.core.task.SimpleAsyncTaskExecutor
+     * @see org.springframework.core.task.ThreadPoolTaskExecutor
      */
     public void setTaskExecutor(Executor taskExecutor) {
         this.taskExecutor = taskExecutor;
@@ -37,17 +49,177 @@ public class SimpleApplicationEventMulticaster extends AbstractApplicationEventM
         return this.taskExecutor;
     }
 
+    /**
+     * 设置了分发器后，优先使用分发器，taskExecutor不再生效
+     * @see BoundedAsyncEventDispatcher
+     * @see MailboxEventDispatcher
+     * @see ForkJoinEventDispatcher
+     * @see RoutingEventDispatcher
+     * @see GuardedEventDispatcher
+     */
+    public void setEventDispatcher(ApplicationEventDispatcher eventDispatcher) {
+        this.eventDispatcher = eventDispatcher;
+    }
+
+    protected ApplicationEventDispatcher getEventDispatcher() {
+        return this.eventDispatcher;
+    }
+
+    /**
+     * 直接遍历缓存中的监听器数组，同步执行时整个过程不会分配新对象
+     */
     public void multicastEvent(final ApplicationEvent event){
-        for (final ApplicationListener listener : getApplicationListeners(event)) {
-            Executor executor = getTaskExecutor();
+        EventDispatchInstrumentation instrumentation = getInstrumentation();
+        if (instrumentation != null) {
+            instrumentation.eventPublished(event);
+        }
+        ApplicationListener[] listeners = getApplicationListenerArray(event);
+        ApplicationEventDispatcher dispatcher = getEventDispatcher();
+        if (dispatcher != null) {
+            if (listeners.length > 0) {
+                dispatcher.dispatch(event, listeners, getListenerInvoker());
+            }
+            return;
+        }
+        Executor executor = getTaskExecutor();
+        for (int i = 0; i < listeners.length; i++) {
+            final ApplicationListener listener = listeners[i];
             if (executor != null) {
                 executor.execute(new Runnable() {
                     public void run() {
-                        listener.onApplicationEvent(event);
+                        invokeListener(listener, event);
                     }
                 });
             } else {
-                listener.onApplicationEvent(event);
+                invokeListener(listener, event);
+            }
+        }
+    }
+
+    /**
+     * 异步发布，执行方式和multicastEvent一致，区别是每个监听器都通过ListenerCompletionTracker调用：
+     * 1. 监听器的异常不再抛给发布者或线程池，而是记录下来，全部结束后汇总
+     * 2. 线程池拒绝，分发器丢弃的监听器也记为失败，保证返回的future一定会结束
+     * 3. 同步执行时返回的future已经是完成状态
+     */
+    @Override
+    public CompletableFuture<Void> multicastEventAsync(final ApplicationEvent event) {
+        EventDispatchInstrumentation instrumentation = getInstrumentation();
+        if (instrumentation != null) {
+            instrumentation.eventPublished(event);
+        }
+        ApplicationListener[] listeners = getApplicationListenerArray(event);
+        final ListenerCompletionTracker tracker =
+                new ListenerCompletionTracker(event, listeners.length, getListenerInvoker());
+        if (listeners.length == 0) {
+            return tracker.future;
+        }
+        ApplicationEventDispatcher dispatcher = getEventDispatcher();
+        if (dispatcher != null) {
+            try {
+                dispatcher.dispatch(event, listeners, tracker);
+            } catch (RuntimeException ex) {
+                //分发器本身失败(例如已经关闭)，没法知道哪些监听器会被调用，直接以失败结束
+                tracker.abort(ex);
+            }
+            return tracker.future;
+        }
+        Executor executor = getTaskExecutor();
+        for (int i = 0; i < listeners.length; i++) {
+            final ApplicationListener listener = listeners[i];
+            if (executor != null) {
+                try {
+                    executor.execute(new Runnable() {
+                        public void run() {
+                            tracker.invokeListener(listener, event);
+                        }
+                    });
+                } catch (RejectedExecutionException ex) {
+                    tracker.listenerFinished(ex);
+                }
+            } else {
+                tracker.invokeListener(listener, event);
+            }
+        }
+        return tracker.future;
+    }
+
+    /**
+     * 批量发布的一组事件：
+     * 1. 同步或者设置了taskExecutor时，按监听器执行，每个监听器一次处理整组事件(每个监听器只提交一个Runnable)
+     * 2. 设置了分发器时，仍然按单个事件交给分发器，保证分发器自己的顺序和背压语义，这里只省掉了重复的检索
+     */
+    @Override
+    protected void multicastEventGroup(final List<ApplicationEvent> events, ApplicationListener[] listeners) {
+        ApplicationEventDispatcher dispatcher = getEventDispatcher();
+        if (dispatcher != null) {
+            for (ApplicationEvent event : events) {
+                dispatcher.dispatch(event, listeners, getListenerInvoker());
+            }
+            return;
+        }
+        Executor executor = getTaskExecutor();
+        for (int i = 0; i < listeners.length; i++) {
+            final ApplicationListener listener = listeners[i];
+            if (executor != null) {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        invokeListener(listener, events);
+                    }
+                });
+            } else {
+                invokeListener(listener, events);
+            }
+        }
+    }
+
+    /**
+     * 分发器或者线程池中还未处理的事件(任务)数：
+     * 1. 设置了分发器时由分发器提供
+     * 2. 线程池是ThreadPoolExecutor或ThreadPoolTaskExecutor时取它的队列长度，其他Executor无法得知，返回0
+     */
+    @Override
+    protected long getPendingEventCount() {
+        ApplicationEventDispatcher dispatcher = getEventDispatcher();
+        if (dispatcher != null) {
+            return dispatcher.getPendingEventCount();
+        }
+        Executor executor = getTaskExecutor();
+        if (executor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executor).getQueue().size();
+        }
+        if (executor instanceof ThreadPoolTaskExecutor) {
+            return ((ThreadPoolTaskExecutor) executor).getQueueSize();
+        }
+        return 0;
+    }
+
+    /**
+     * 用一组事件调用监听器，BatchApplicationListener一次收到整组(埋点记为一次调用)，其他监听器逐个调用
+     */
+    protected void invokeListener(ApplicationListener listener, List<ApplicationEvent> events) {
+        if (listener instanceof BatchApplicationListener) {
+            EventDispatchInstrumentation instrumentation = getInstrumentation();
+            if (instrumentation == null) {
+                ((BatchApplicationListener) listener).onApplicationEvents(Collections.unmodifiableList(events));
+                return;
+            }
+            long start = System.nanoTime();
+            Throwable failure = null;
+            try {
+                ((BatchApplicationListener) listener).onApplicationEvents(Collections.unmodifiableList(events));
+            } catch (RuntimeException ex) {
+                failure = ex;
+                throw ex;
+            } catch (Error err) {
+                failure = err;
+                throw err;
+            } finally {
+                instrumentation.listenerInvoked(listener, events.get(0), System.nanoTime() - start, failure);
+            }
+        } else {
+            for (ApplicationEvent event : events) {
+                invokeListener(listener, event);
             }
         }
     }
@@ -0,0 +1,194 @@
+package org.springframework.context.event;
+
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * EventDispatchInstrumentation的默认实现，只在内存中计数，不依赖任何外部服务：
+ * 1. 计数器都是LongAdder，多线程同时累加时基本没有竞争
+ * 2. 发布次数同时按事件类型计数，耗时按事件类型和监听器Class分别统计，直方图按2的幂分桶，记录一次只是几次原子加
+ * 3. 通过snapshot()随时读取，reset()清零
+ */
+public class SimpleEventDispatchMetrics implements EventDispatchInstrumentation {
+
+    private volatile long startMillis = System.currentTimeMillis();
+
+    private final LongAdder publishedCount = new LongAdder();
+
+    private final ConcurrentMap<Class<?>, LongAdder> publishedCountByEventType = new ConcurrentHashMap<Class<?>, LongAdder>();
+
+    private final LongAdder retrieverCacheHits = new LongAdder();
+
+    private final LongAdder retrieverCacheMisses = new LongAdder();
+
+    private final LongAdder retrieverCacheInvalidations = new LongAdder();
+
+    private final ConcurrentMap<Class<?>, LatencyStats> eventTypeStats = new ConcurrentHashMap<Class<?>, LatencyStats>();
+
+    private final ConcurrentMap<Class<?>, LatencyStats> listenerStats = new ConcurrentHashMap<Class<?>, LatencyStats>();
+
+    private volatile LongSupplier queueDepth;
+
+    @Override
+    public void eventPublished(ApplicationEvent event) {
+        this.publishedCount.increment();
+        LongAdder typeCount = this.publishedCountByEventType.get(event.getClass());
+        if (typeCount == null) {
+            LongAdder newCount = new LongAdder();
+            typeCount = this.publishedCountByEventType.putIfAbsent(event.getClass(), newCount);
+            if (typeCount == null) {
+                typeCount = newCount;
+            }
+        }
+        typeCount.increment();
+    }
+
+    @Override
+    public void listenerInvoked(ApplicationListener listener, ApplicationEvent event, long durationNanos, Throwable failure) {
+        getStats(this.eventTypeStats, event.getClass()).record(durationNanos, failure != null);
+        getStats(this.listenerStats, listener.getClass()).record(durationNanos, failure != null);
+    }
+
+    @Override
+    public void retrieverCacheHit() {
+        this.retrieverCacheHits.increment();
+    }
+
+    @Override
+    public void retrieverCacheMiss() {
+        this.retrieverCacheMisses.increment();
+    }
+
+    @Override
+    public void retrieverCacheInvalidated() {
+        this.retrieverCacheInvalidations.increment();
+    }
+
+    @Override
+    public void bindQueueDepth(LongSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    private static LatencyStats getStats(ConcurrentMap<Class<?>, LatencyStats> statsMap, Class<?> key) {
+        LatencyStats stats = statsMap.get(key);
+        if (stats == null) {
+            LatencyStats newStats = new LatencyStats();
+            stats = statsMap.putIfAbsent(key, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * 读取当前的统计快照，读取过程中仍然可以并发记录，所以各项之间不保证严格一致
+     */
+    public EventDispatchMetricsSnapshot snapshot() {
+        LongSupplier queueDepth = this.queueDepth;
+        Map<Class<?>, Long> publishedCountByEventType = new LinkedHashMap<Class<?>, Long>();
+        for (Map.Entry<Class<?>, LongAdder> entry : this.publishedCountByEventType.entrySet()) {
+            publishedCountByEventType.put(entry.getKey(), entry.getValue().sum());
+        }
+        return new EventDispatchMetricsSnapshot(
+                System.currentTimeMillis() - this.startMillis,
+                this.publishedCount.sum(),
+                publishedCountByEventType,
+                this.retrieverCacheHits.sum(),
+                this.retrieverCacheMisses.sum(),
+                this.retrieverCacheInvalidations.sum(),
+                (queueDepth != null ? queueDepth.getAsLong() : 0),
+                snapshot(this.eventTypeStats),
+                snapshot(this.listenerStats));
+    }
+
+    private static Map<Class<?>, EventDispatchMetricsSnapshot.LatencySnapshot> snapshot(
+            Map<Class<?>, LatencyStats> statsMap) {
+        Map<Class<?>, EventDispatchMetricsSnapshot.LatencySnapshot> result =
+                new LinkedHashMap<Class<?>, EventDispatchMetricsSnapshot.LatencySnapshot>();
+        for (Map.Entry<Class<?>, LatencyStats> entry : statsMap.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return result;
+    }
+
+    /**
+     * 清空所有统计，重新开始计算发布速率
+     */
+    public void reset() {
+        this.publishedCount.reset();
+        this.publishedCountByEventType.clear();
+        this.retrieverCacheHits.reset();
+        this.retrieverCacheMisses.reset();
+        this.retrieverCacheInvalidations.reset();
+        this.eventTypeStats.clear();
+        this.listenerStats.clear();
+        this.startMillis = System.currentTimeMillis();
+    }
+
+
+    /**
+     * 一组调用的耗时统计，第i个桶记录耗时在[2^i, 2^(i+1))纳秒之间的调用次数
+     */
+    private static final class LatencyStats {
+
+        private static final int BUCKETS = 64;
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder failures = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos, boolean failed) {
+            this.count.increment();
+            if (failed) {
+                this.failures.increment();
+            }
+            this.totalNanos.add(nanos);
+            this.maxNanos.accumulate(nanos);
+            this.histogram.incrementAndGet(nanos > 0 ? 63 - Long.numberOfLeadingZeros(nanos) : 0);
+        }
+
+        EventDispatchMetricsSnapshot.LatencySnapshot snapshot() {
+            long[] buckets = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = this.histogram.get(i);
+                total += buckets[i];
+            }
+            return new EventDispatchMetricsSnapshot.LatencySnapshot(this.count.sum(), this.failures.sum(),
+                    this.totalNanos.sum(), this.maxNanos.get(), percentile(buckets, total, 0.50),
+                    percentile(buckets, total, 0.90), percentile(buckets, total, 0.99));
+        }
+
+        //返回百分位所在桶的上界
+        private static long percentile(long[] buckets, long total, double percentile) {
+            if (total == 0) {
+                return 0;
+            }
+            long threshold = (long) Math.ceil(total * percentile);
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i];
+                if (cumulative >= threshold) {
+                    return (i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1);
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+}
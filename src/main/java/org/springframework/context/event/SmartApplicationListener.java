@@ -2,12 +2,14 @@ package org.springframework.context.event;
 
 import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
+import org.springframework.core.Ordered;
 
 /**
  * 标准接口的扩展，目的是可以自定义判断事件类型；
  * 注释部分原文：exposing further metadata such as the supported event type
+ * 同时继承了Ordered，检索出的监听器按order排序
  */
-public interface SmartApplicationListener extends ApplicationListener<ApplicationEvent> {
+public interface SmartApplicationListener extends ApplicationListener<ApplicationEvent>, Ordered {
 
     /**
      * 确定(Determine)该监听器是否支持该事件
@@ -2,13 +2,30 @@ package org.springframework.context.support;
 
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.AbstractApplicationEventMulticaster;
+import org.springframework.context.event.ApplicationEventMulticaster;
+import org.springframework.context.event.EventPublicationException;
+import org.springframework.context.event.SimpleApplicationEventMulticaster;
 import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.util.Assert;
 import org.springframework.util.ObjectUtils;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
+
 public abstract class AbstractApplicationContext extends DefaultResourceLoader
         implements ConfigurableApplicationContext, DisposableBean {
 
+    //容器中如果有这个名字的bean，就用它作为事件广播器，否则使用SimpleApplicationEventMulticaster
+    public static final String APPLICATION_EVENT_MULTICASTER_BEAN_NAME = "applicationEventMulticaster";
+
     private String id;
     private String displayName;
     private ApplicationContext parent; //父容器，组合方式
@@ -18,6 +35,8 @@ public abstract class AbstractApplicationContext extends DefaultResourceLoader
     private final Object activeMonitor; //active状态监视对象，对象锁
     private final Object startupShutdownMonitor; //容器启停的监视对象，对象锁
     private Thread shutdownHook; //当JVM关闭是，自动运行
+    private volatile ApplicationEventMulticaster applicationEventMulticaster; //事件发布委托给它，第一次发布时初始化
+    private volatile boolean parentMulticasterLinked; //广播器已经挂到父容器的广播器下，发布时不再转发给父容器
 
     public AbstractApplicationContext(){
         this(null);
@@ -50,6 +69,134 @@ public abstract class AbstractApplicationContext extends DefaultResourceLoader
 
     }
 
+    /**
+     * 发布事件：先交给自己的事件广播器，再交给父容器发布；
+     * 广播器已经和父容器的链接起来时，自己的广播器会一次性通知整条链上的监听器，不再转发
+     */
+    @Override
+    public void publishEvent(ApplicationEvent event) {
+        Assert.notNull(event, "Event must not be null");
+        getApplicationEventMulticaster().multicastEvent(event);
+        if (this.parent != null && !this.parentMulticasterLinked) {
+            this.parent.publishEvent(event);
+        }
+    }
+
+    /**
+     * 批量发布事件，同publishEvent
+     */
+    @Override
+    public void publishEvents(Collection<? extends ApplicationEvent> events) {
+        Assert.notNull(events, "Events must not be null");
+        getApplicationEventMulticaster().multicastEvents(events);
+        if (this.parent != null && !this.parentMulticasterLinked) {
+            this.parent.publishEvents(events);
+        }
+    }
+
+    /**
+     * 异步发布事件：自己的广播器和父容器都结束后才完成，任何一方的失败都汇总到同一个EventPublicationException中
+     */
+    @Override
+    public CompletableFuture<Void> publishEventAsync(final ApplicationEvent event) {
+        Assert.notNull(event, "Event must not be null");
+        final CompletableFuture<Void> localFuture = getApplicationEventMulticaster().multicastEventAsync(event);
+        if (this.parent == null || this.parentMulticasterLinked) {
+            return localFuture;
+        }
+        final CompletableFuture<Void> parentFuture = this.parent.publishEventAsync(event);
+        final CompletableFuture<Void> result = new CompletableFuture<Void>();
+        CompletableFuture.allOf(localFuture, parentFuture).whenComplete(new BiConsumer<Void, Throwable>() {
+            public void accept(Void ignored, Throwable ex) {
+                List<Throwable> failures = new ArrayList<Throwable>();
+                collectFailures(localFuture, failures);
+                collectFailures(parentFuture, failures);
+                if (failures.isEmpty()) {
+                    result.complete(null);
+                } else {
+                    result.completeExceptionally(new EventPublicationException(event, failures));
+                }
+            }
+        });
+        return result;
+    }
+
+    //已经结束的future中的失败，EventPublicationException展开成里面的各个失败
+    private static void collectFailures(CompletableFuture<Void> future, List<Throwable> failures) {
+        try {
+            future.join();
+        } catch (CompletionException ex) {
+            Throwable cause = (ex.getCause() != null ? ex.getCause() : ex);
+            if (cause instanceof EventPublicationException) {
+                failures.addAll(((EventPublicationException) cause).getFailures());
+            } else {
+                failures.add(cause);
+            }
+        } catch (CancellationException ex) {
+            failures.add(ex);
+        }
+    }
+
+    /**
+     * 这里还没有refresh流程，所以广播器在第一次用到时才初始化
+     */
+    ApplicationEventMulticaster getApplicationEventMulticaster() {
+        ApplicationEventMulticaster multicaster = this.applicationEventMulticaster;
+        if (multicaster == null) {
+            synchronized (this.startupShutdownMonitor) {
+                if (this.applicationEventMulticaster == null) {
+                    initApplicationEventMulticaster();
+                }
+                multicaster = this.applicationEventMulticaster;
+            }
+        }
+        return multicaster;
+    }
+
+    /**
+     * 初始化事件广播器，第一次发布事件时调用：
+     * 容器中定义了applicationEventMulticaster这个bean就用它，否则创建默认的SimpleApplicationEventMulticaster；
+     * 例如定义一个RingBufferApplicationEventMulticaster或者CoalescingApplicationEventMulticaster就可以切换发布方式
+     * @see org.springframework.context.event.RingBufferApplicationEventMulticaster
+     * @see org.springframework.context.event.CoalescingApplicationEventMulticaster
+     */
+    protected void initApplicationEventMulticaster() {
+        ApplicationEventMulticaster multicaster;
+        if (containsBean(APPLICATION_EVENT_MULTICASTER_BEAN_NAME)) {
+            multicaster = getBean(APPLICATION_EVENT_MULTICASTER_BEAN_NAME, ApplicationEventMulticaster.class);
+        } else {
+            multicaster = new SimpleApplicationEventMulticaster(this);
+        }
+        //先链接好再发布出去，其他线程看到广播器时链接状态已经确定
+        linkParentMulticaster(multicaster);
+        this.applicationEventMulticaster = multicaster;
+    }
+
+    /**
+     * 父容器的广播器(需要时先初始化)和自己的都是AbstractApplicationEventMulticaster时，把自己的广播器挂到父容器的下面：
+     * 1. 发布事件时整条链的监听器只检索一次，合并去重后缓存，不用每一层各自检索再逐层转发
+     * 2. 同一个监听器同时注册在父子容器中时只会被调用一次
+     * 3. 父容器自己还要转发给更上层(没有链接起来)的话不能链接，否则更上层会收不到事件
+     * 链接后整条链的监听器都由自己的广播器执行，父容器广播器的线程池或分发器不再参与子容器发布的事件
+     */
+    private void linkParentMulticaster(ApplicationEventMulticaster multicaster) {
+        this.parentMulticasterLinked = false;
+        if (!(this.parent instanceof AbstractApplicationContext) ||
+                !(multicaster instanceof AbstractApplicationEventMulticaster)) {
+            return;
+        }
+        AbstractApplicationContext parentContext = (AbstractApplicationContext) this.parent;
+        //父容器的广播器同样在这里按需初始化
+        ApplicationEventMulticaster parentMulticaster = parentContext.getApplicationEventMulticaster();
+        if (!(parentMulticaster instanceof AbstractApplicationEventMulticaster) ||
+                (parentContext.parent != null && !parentContext.parentMulticasterLinked)) {
+            return;
+        }
+        ((AbstractApplicationEventMulticaster) multicaster).setParent(
+                (AbstractApplicationEventMulticaster) parentMulticaster);
+        this.parentMulticasterLinked = true;
+    }
+
     /**
      * 提供默认的关闭钩子注册方法：默认会在JVM关闭时自动调用AbstractApplicationContext的close方法
      */
@@ -5,14 +5,54 @@ import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
 
 import java.lang.reflect.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * 原文百度翻译：帮助类，根据给定的类型变量来解析泛型，主要用于在框架中使用，解析方法参数类型，即使它们是泛型声明的。
+ *
+ * 解析结果都缓存在ClassValue里：值挂在Class对象上，类加载器卸载时一起回收，不需要额外的弱引用Map；
+ * 缓存的结果(包括解析不出来的结果)都是不可变的，返回给调用方的数组都是复制出来的，修改不会影响缓存
  */
 public class GenericTypeResolver {
 
+    //解析不出来的标记，用来缓存"不能解析"这个结果
+    private static final Class<?>[] NOT_RESOLVABLE = new Class<?>[0];
+
+    /**
+     * clazz -> (genericIfc -> 泛型具体类型)
+     */
+    private static final ClassValue<ConcurrentMap<Class<?>, Class<?>[]>> typeArgumentsCache =
+            new ClassValue<ConcurrentMap<Class<?>, Class<?>[]>>() {
+                @Override
+                protected ConcurrentMap<Class<?>, Class<?>[]> computeValue(Class<?> clazz) {
+                    return new ConcurrentHashMap<Class<?>, Class<?>[]>(4);
+                }
+            };
+
+    /**
+     * clazz -> 继承体系中 泛型变量 -> 具体类型 的映射
+     */
+    private static final ClassValue<Map<TypeVariable, Type>> typeVariableMapCache =
+            new ClassValue<Map<TypeVariable, Type>>() {
+                @Override
+                protected Map<TypeVariable, Type> computeValue(Class<?> clazz) {
+                    return Collections.unmodifiableMap(buildTypeVariableMap(clazz));
+                }
+            };
+
+    /**
+     * clazz -> 所有参数化父类型的解析结果，见resolveAll
+     */
+    private static final ClassValue<Map<Class<?>, Class<?>[]>> allTypeArgumentsCache =
+            new ClassValue<Map<Class<?>, Class<?>[]>>() {
+                @Override
+                protected Map<Class<?>, Class<?>[]> computeValue(Class<?> clazz) {
+                    return Collections.unmodifiableMap(doResolveAll(clazz));
+                }
+            };
+
     /**
      * 针对给定的目标类和泛型实现接口来解析泛型变量的具体类型；
      * 这里假设检测目标是实现genericIfc的
@@ -21,7 +61,7 @@ public class GenericTypeResolver {
      * @return
      */
     public static Class<?> resolveTypeArgument(Class<?> clazz, Class<?> genericIfc){
-        Class<?>[] typeArgs = resolveTypeArguments(clazz, genericIfc);
+        Class<?>[] typeArgs = getCachedTypeArguments(clazz, genericIfc);
         if (typeArgs == null) {
             return null;
         }
@@ -35,12 +75,94 @@ public class GenericTypeResolver {
     /**
      * 1. 解析参数化类型，也就是提取给定类的泛型具体类型；
      * 2. 这里假定要解析的class实现了泛型接口，并且声明了具体的参数类型
+     * 3. 结果按(clazz, genericIfc)缓存，解析不出来的null也会缓存
      * @param clazz
      * @param genericIfc the generic interface or superclass to resolve the type argument from
-     * @return
+     * @return 结果数组的副本；解析不出来返回null
      */
     public static Class<?>[] resolveTypeArguments(Class<?> clazz, Class<?> genericIfc){
-        return doResolveTypeArguments(clazz, clazz, genericIfc);
+        Class<?>[] typeArgs = getCachedTypeArguments(clazz, genericIfc);
+        return (typeArgs != null ? typeArgs.clone() : null);
+    }
+
+    //缓存中共享的数组，只在内部读取，不能交给调用方
+    private static Class<?>[] getCachedTypeArguments(Class<?> clazz, Class<?> genericIfc) {
+        ConcurrentMap<Class<?>, Class<?>[]> cache = typeArgumentsCache.get(clazz);
+        Class<?>[] typeArgs = cache.get(genericIfc);
+        if (typeArgs == null) {
+            typeArgs = doResolveTypeArguments(clazz, clazz, genericIfc);
+            if (typeArgs == null) {
+                typeArgs = NOT_RESOLVABLE;
+            }
+            cache.putIfAbsent(genericIfc, typeArgs);
+        }
+        return (typeArgs != NOT_RESOLVABLE ? typeArgs : null);
+    }
+
+    /**
+     * 一次遍历解析clazz所有参数化的父类和父接口：
+     * 例如class A extends Base<String> implements ApplicationListener<MyEvent>，
+     * 得到{Base=[String], ApplicationListener=[MyEvent]}；
+     * 离clazz最近的声明优先，结果缓存；返回的Map和其中的数组都是复制出来的
+     * @param clazz 要解析的Class
+     * @return 泛型父类型 -> 泛型具体类型
+     */
+    public static Map<Class<?>, Class<?>[]> resolveAll(Class<?> clazz) {
+        Map<Class<?>, Class<?>[]> cached = allTypeArgumentsCache.get(clazz);
+        Map<Class<?>, Class<?>[]> result = new LinkedHashMap<Class<?>, Class<?>[]>(cached.size() * 4 / 3 + 1);
+        for (Map.Entry<Class<?>, Class<?>[]> entry : cached.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().clone());
+        }
+        return result;
+    }
+
+    /**
+     * 广度优先遍历clazz的泛型父类和泛型父接口，每个泛型父类型只解析第一次遇到的那个
+     */
+    private static Map<Class<?>, Class<?>[]> doResolveAll(Class<?> clazz) {
+        Map<Class<?>, Class<?>[]> result = new LinkedHashMap<Class<?>, Class<?>[]>();
+        Set<Class<?>> visited = new HashSet<Class<?>>();
+        Deque<Class<?>> toVisit = new ArrayDeque<Class<?>>();
+        toVisit.add(clazz);
+        while (!toVisit.isEmpty()) {
+            Class<?> current = toVisit.poll();
+            if (!visited.add(current)) {
+                continue;
+            }
+            List<Type> supertypes = new ArrayList<Type>();
+            Collections.addAll(supertypes, current.getGenericInterfaces());
+            try {
+                Type genericSuperclass = current.getGenericSuperclass();
+                if (genericSuperclass != null) {
+                    supertypes.add(genericSuperclass);
+                }
+            } catch (MalformedParameterizedTypeException ex) {
+                //父类的泛型信息有问题，跳过父类继续处理接口
+            }
+            for (Type supertype : supertypes) {
+                Class<?> rawType;
+                if (supertype instanceof ParameterizedType) {
+                    ParameterizedType paramType = (ParameterizedType) supertype;
+                    rawType = (Class<?>) paramType.getRawType();
+                    if (!result.containsKey(rawType)) {
+                        Type[] typeArgs = paramType.getActualTypeArguments();
+                        Class<?>[] resolved = new Class<?>[typeArgs.length];
+                        for (int i = 0; i < typeArgs.length; i++) {
+                            resolved[i] = extractClass(clazz, typeArgs[i]);
+                        }
+                        result.put(rawType, resolved);
+                    }
+                } else if (supertype instanceof Class) {
+                    rawType = (Class<?>) supertype;
+                } else {
+                    continue;
+                }
+                if (rawType != Object.class) {
+                    toVisit.add(rawType);
+                }
+            }
+        }
+        return result;
     }
 
     /**
@@ -142,12 +264,85 @@ public class GenericTypeResolver {
             Class<?> componentClass = extractClass(ownerClass, gt);
             return Array.newInstance(componentClass, 0).getClass(); //数组Class，[Ljava.util.ArrayList
         }else if(arg instanceof TypeVariable){ //泛型变量，T，K
+            //例如BatchApplicationListener<E>继承ApplicationListener<E>，这里的E需要到ownerClass的继承体系中找到具体类型
             TypeVariable tv = (TypeVariable) arg;
-
+            arg = getTypeVariableMap(ownerClass).get(tv);
+            if (arg == null) { //找不到具体类型，就用它的上界
+                arg = extractBoundForTypeVariable(tv);
+            } else {
+                arg = extractClass(ownerClass, arg);
+            }
         }
         return (arg instanceof Class)? (Class) arg : Object.class;
     }
 
+    /**
+     * 泛型变量的上界，形如E extends ApplicationEvent就是ApplicationEvent，没有声明就是Object
+     */
+    private static Type extractBoundForTypeVariable(TypeVariable typeVariable) {
+        Type[] bounds = typeVariable.getBounds();
+        if (bounds.length == 0) {
+            return Object.class;
+        }
+        Type bound = bounds[0];
+        if (bound instanceof TypeVariable) {
+            bound = extractBoundForTypeVariable((TypeVariable) bound);
+        }
+        return bound;
+    }
+
+    /**
+     * 收集clazz继承体系(父类和所有父接口)中，泛型变量到具体类型的映射，
+     * 例如class A implements BatchApplicationListener<MyEvent>，会得到E->MyEvent；结果按Class缓存，不可修改
+     */
+    static Map<TypeVariable, Type> getTypeVariableMap(Class<?> clazz) {
+        return typeVariableMapCache.get(clazz);
+    }
+
+    private static Map<TypeVariable, Type> buildTypeVariableMap(Class<?> clazz) {
+        Map<TypeVariable, Type> typeVariableMap = new HashMap<TypeVariable, Type>();
+        extractTypeVariablesFromGenericInterfaces(clazz.getGenericInterfaces(), typeVariableMap);
+        Type genericType = clazz.getGenericSuperclass();
+        Class<?> type = clazz.getSuperclass();
+        while (type != null && !Object.class.equals(type)) {
+            if (genericType instanceof ParameterizedType) {
+                populateTypeMapFromParameterizedType((ParameterizedType) genericType, typeVariableMap);
+            }
+            extractTypeVariablesFromGenericInterfaces(type.getGenericInterfaces(), typeVariableMap);
+            genericType = type.getGenericSuperclass();
+            type = type.getSuperclass();
+        }
+        return typeVariableMap;
+    }
+
+    private static void extractTypeVariablesFromGenericInterfaces(Type[] genericInterfaces, Map<TypeVariable, Type> typeVariableMap) {
+        for (Type genericInterface : genericInterfaces) {
+            if (genericInterface instanceof ParameterizedType) {
+                ParameterizedType pt = (ParameterizedType) genericInterface;
+                populateTypeMapFromParameterizedType(pt, typeVariableMap);
+                if (pt.getRawType() instanceof Class) {
+                    extractTypeVariablesFromGenericInterfaces(((Class<?>) pt.getRawType()).getGenericInterfaces(), typeVariableMap);
+                }
+            } else if (genericInterface instanceof Class) {
+                extractTypeVariablesFromGenericInterfaces(((Class<?>) genericInterface).getGenericInterfaces(), typeVariableMap);
+            }
+        }
+    }
+
+    private static void populateTypeMapFromParameterizedType(ParameterizedType type, Map<TypeVariable, Type> typeVariableMap) {
+        if (type.getRawType() instanceof Class) {
+            Type[] actualTypeArguments = type.getActualTypeArguments();
+            TypeVariable[] typeVariables = ((Class<?>) type.getRawType()).getTypeParameters();
+            for (int i = 0; i < actualTypeArguments.length; i++) {
+                Type actualTypeArgument = actualTypeArguments[i];
+                //E->T这种还是泛型变量的，先不放，避免覆盖掉已经解析出来的具体类型
+                if (!(actualTypeArgument instanceof TypeVariable) || !typeVariableMap.containsKey(typeVariables[i])) {
+                    typeVariableMap.put(typeVariables[i], actualTypeArgument);
+                }
+            }
+        }
+    }
+
     /**
      * 文章：https://www.jianshu.com/p/da21b3a59b47，泛型相关接口等术语定义
      * 1. ParameterizedType：文中称之为泛型实例，如Map<String, String>是泛型Map<K,V>的一个实例
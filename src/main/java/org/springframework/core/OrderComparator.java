@@ -0,0 +1,38 @@
+package org.springframework.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 按Ordered排序的比较器，没有实现Ordered的对象排在最后；
+ * 排序方法使用的是稳定排序，order相同的对象保持原来的相对顺序
+ */
+public class OrderComparator implements Comparator<Object> {
+
+    public static final OrderComparator INSTANCE = new OrderComparator();
+
+    @Override
+    public int compare(Object o1, Object o2) {
+        int i1 = getOrder(o1);
+        int i2 = getOrder(o2);
+        return (i1 < i2) ? -1 : (i1 > i2) ? 1 : 0;
+    }
+
+    protected int getOrder(Object obj) {
+        return (obj instanceof Ordered ? ((Ordered) obj).getOrder() : Ordered.LOWEST_PRECEDENCE);
+    }
+
+    public static void sort(List<?> list) {
+        if (list.size() > 1) {
+            Collections.sort(list, INSTANCE);
+        }
+    }
+
+    public static void sort(Object[] array) {
+        if (array.length > 1) {
+            Arrays.sort(array, INSTANCE);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.springframework.core;
+
+/**
+ * 可排序的对象，例如监听器；数值越小越靠前(优先级越高)，相同数值时保持原来的顺序
+ * @see OrderComparator
+ */
+public interface Ordered {
+
+    //最高优先级
+    int HIGHEST_PRECEDENCE = Integer.MIN_VALUE;
+
+    //最低优先级，没有实现Ordered的对象也按这个处理
+    int LOWEST_PRECEDENCE = Integer.MAX_VALUE;
+
+    int getOrder();
+}
@@ -3,12 +3,20 @@ package org.springframework.core.io;
 import org.springframework.util.ResourceUtils;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.net.JarURLConnection;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.jar.JarEntry;
 
 /**
  * https://www.cnblogs.com/zrtqsk/p/4015323.html
@@ -19,7 +27,12 @@ import java.net.URLConnection;
  * 这里是假定中间表示jar包的URL是file协议开头的，例如：jar:file:/C:/...A.jar!/com.xck.xxx.class；
  * 最后利用工具类的File getFile(URL resourceUrl, String description)获取File；
  * 3. 并未实现getURL方法
- * 4. boolean exists()为什么还包含了网络资源？我一直以为这个方法只会有本地文件，难道是为了可以复用？
+ * 4. 实现了MappableResource，解析成本地文件的资源(file协议)可以直接映射到内存
+ * 5. 可以设置ResourceMetadataCache，不是file协议的资源的exists，contentLength，lastModified按URL缓存，
+ * 过期后用条件请求重新验证，不用每次都发请求或者打开jar
+ * 6. 可以设置JarFileCache，本地jar中的条目的exists，contentLength以及输入流都通过共享的JarFile得到，
+ * 不再每次通过JarURLConnection打开jar
+ * 7. boolean exists()为什么还包含了网络资源？我一直以为这个方法只会有本地文件，难道是为了可以复用？
  * 下面这个这篇文家里的解释，感觉可以说明这个疑问
  *
  * https://blog.csdn.net/fyzlucky2015/article/details/77943994,这里面有个解释不错：
@@ -36,9 +49,153 @@ import java.net.URLConnection;
  * 该类是一个抽象资源的基础类，用于解析URL为文件引用；它可以在URL中检测file协议和jboss的vfs协议
  * 来提取出文件系统的引用；
  */
-public abstract class AbstractFileResolvingResource extends AbstractResource{
+public abstract class AbstractFileResolvingResource extends AbstractResource implements MappableResource {
     public AbstractFileResolvingResource() {}
 
+    //元数据缓存，默认没有，每次都直接探测
+    private ResourceMetadataCache metadataCache;
+
+    //共享的JarFile缓存，默认没有
+    private JarFileCache jarFileCache;
+
+    //缓存过期时回调probeMetadata
+    private final ResourceMetadataCache.MetadataProbe metadataProbe = new ResourceMetadataCache.MetadataProbe() {
+        public ResourceMetadataCache.Metadata probe(URL url, ResourceMetadataCache.Metadata previous) throws IOException {
+            return probeMetadata(url, previous);
+        }
+    };
+
+    /**
+     * 设置元数据缓存，多个资源可以共享同一个；file协议的资源只是读文件属性，不经过缓存
+     */
+    public void setMetadataCache(ResourceMetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
+
+    public ResourceMetadataCache getMetadataCache() {
+        return this.metadataCache;
+    }
+
+    /**
+     * 设置共享的JarFile缓存，多个资源(一般是同一个fat jar中的)应该共享同一个
+     */
+    public void setJarFileCache(JarFileCache jarFileCache) {
+        this.jarFileCache = jarFileCache;
+    }
+
+    public JarFileCache getJarFileCache() {
+        return this.jarFileCache;
+    }
+
+    //设置了jar缓存并且URL是本地jar中的条目时返回缓存，否则返回null
+    protected JarFileCache getJarFileCache(URL url) {
+        JarFileCache jarFileCache = this.jarFileCache;
+        return (jarFileCache != null && jarFileCache.supports(url) ? jarFileCache : null);
+    }
+
+    //设置了缓存并且不是file协议时返回缓存的元数据，否则返回null
+    private ResourceMetadataCache.Metadata getCachedMetadata(URL url) throws IOException {
+        ResourceMetadataCache metadataCache = this.metadataCache;
+        if (metadataCache == null || ResourceUtils.isFileURL(url)) {
+            return null;
+        }
+        return metadataCache.getMetadata(url, this.metadataProbe);
+    }
+
+    private static boolean isHttpURL(URL url) {
+        String protocol = url.getProtocol();
+        return ("http".equals(protocol) || "https".equals(protocol));
+    }
+
+    /**
+     * 探测URL的元数据，缓存没有或者过期时调用：
+     * 1. jar：jar文件的修改时间没变时直接返回previous，不再打开jar；否则从jar条目中取大小，
+     * 条目中没有记录大小时读一遍内容计数，结果缓存起来，之后不用再读
+     * 2. http：带上previous的ETag和修改时间做条件请求(默认HEAD)，返回304时直接返回previous；
+     * 是否存在的判断和exists()一致：200存在，404不存在，其他状态码有Content-Length才算存在
+     * 3. 其他：给出了长度就算存在，否则读一遍输入流，能打开就算存在，顺便得到长度
+     * 4. 所以只有http的长度可能是-1(没有Content-Length)，和不使用缓存时contentLength()的结果一致
+     * @param previous 已经过期的元数据，可能是null
+     */
+    protected ResourceMetadataCache.Metadata probeMetadata(URL url, ResourceMetadataCache.Metadata previous)
+            throws IOException {
+        long jarModified = 0;
+        JarFileCache jarFileCache = getJarFileCache(url);
+        if (jarFileCache != null) {
+            //jar缓存自己会检查jar文件有没有变化
+            JarEntry entry = jarFileCache.getEntry(url);
+            long size = (entry != null ? entry.getSize() : -1);
+            if (entry != null && size < 0) {
+                size = super.contentLength();
+            }
+            return new ResourceMetadataCache.Metadata(entry != null, size,
+                    this.getFileForLastModifiedCheck().lastModified(), null);
+        }
+        if (ResourceUtils.isJarURL(url)) {
+            try {
+                jarModified = this.getFileForLastModifiedCheck().lastModified();
+            } catch (FileNotFoundException e) {
+                //jar不在本地文件系统中，只能打开jar
+            }
+            if (previous != null && jarModified != 0 && previous.getLastModified() == jarModified) {
+                return previous;
+            }
+        }
+        URLConnection con = url.openConnection();
+        this.customizeConnection(con);
+        if (con instanceof JarURLConnection) {
+            JarURLConnection jarCon = (JarURLConnection) con;
+            JarEntry entry;
+            try {
+                entry = jarCon.getJarEntry();
+            } catch (FileNotFoundException e) { //jar或者条目不存在，连接中已经关闭了JarFile
+                return new ResourceMetadataCache.Metadata(false, -1, jarModified, null);
+            }
+            if (!jarCon.getUseCaches()) {
+                jarCon.getJarFile().close();
+            }
+            long size = (entry != null ? entry.getSize() : -1);
+            if (size < 0) {
+                size = super.contentLength();
+            }
+            return new ResourceMetadataCache.Metadata(true, size, jarModified, null);
+        }
+        if (con instanceof HttpURLConnection) {
+            HttpURLConnection httpCon = (HttpURLConnection) con;
+            if (previous != null && previous.exists()) {
+                if (previous.getETag() != null) {
+                    httpCon.setRequestProperty("If-None-Match", previous.getETag());
+                }
+                if (previous.getLastModified() > 0) {
+                    httpCon.setIfModifiedSince(previous.getLastModified());
+                }
+            }
+            int code = httpCon.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && previous != null) {
+                return previous;
+            }
+            long length = httpCon.getContentLengthLong();
+            if (code == HttpURLConnection.HTTP_OK || (code != HttpURLConnection.HTTP_NOT_FOUND && length >= 0)) {
+                return new ResourceMetadataCache.Metadata(true, length, httpCon.getLastModified(),
+                        httpCon.getHeaderField("ETag"));
+            }
+            httpCon.disconnect();
+            return new ResourceMetadataCache.Metadata(false, -1, 0, null);
+        }
+        long length = con.getContentLengthLong();
+        boolean exists = (length >= 0);
+        if (!exists) {
+            try {
+                //反正要打开输入流确认是否存在，直接读完计数
+                length = super.contentLength();
+                exists = true;
+            } catch (FileNotFoundException e) {
+                //不存在
+            }
+        }
+        return new ResourceMetadataCache.Metadata(exists, length, con.getLastModified(), null);
+    }
+
     @Override
     public File getFile() throws IOException {
         URL url = this.getURL();
@@ -74,6 +231,10 @@ public abstract class AbstractFileResolvingResource extends AbstractResource{
             URL url = this.getURL();
             if(ResourceUtils.isFileURL(url)){
                 return this.getFile().exists();
+            }else if(getJarFileCache(url) != null){
+                return (getJarFileCache(url).getEntry(url) != null);
+            }else if(this.metadataCache != null){
+                return getCachedMetadata(url).exists();
             }else{
                 //此处还未真正进行网络连接
                 //如果是http会返回HttpURLConnection，jar-JarURLConnection
@@ -122,22 +283,104 @@ public abstract class AbstractFileResolvingResource extends AbstractResource{
         }
     }
 
+    /**
+     * 尽量从元数据得到长度，不读取内容：
+     * 1. file协议：文件大小
+     * 2. jar协议：jar条目中记录的(解压后的)大小，不需要解压；没有缓存时用完要关闭JarFile
+     * 3. http：HEAD请求的Content-Length，用long版本，超过2G也不会溢出；没有这个header时返回-1，不为了计数下载整个内容
+     * 4. 其他连接给出了长度就用，否则才退回到父类读取流计数
+     * 5. 设置了元数据缓存时以缓存为准：探测时已经按上面的规则算好了长度，只有http会缓存-1(没有Content-Length)，
+     * 直接返回，不再发请求；其他协议万一是-1(例如旧版本缓存的结果)仍然按上面的规则处理，结果和不使用缓存时一致
+     */
     @Override
     public long contentLength() throws IOException {
         URL url = this.getURL();
         if (ResourceUtils.isFileURL(url)) {
             return this.getFile().length();
+        }
+        JarFileCache jarFileCache = getJarFileCache(url);
+        if (jarFileCache != null) {
+            JarEntry entry = jarFileCache.getEntry(url);
+            if (entry == null) {
+                throw new FileNotFoundException(this.getDescription() + " cannot be resolved for checking its content length because it does not exist");
+            }
+            if (entry.getSize() >= 0) {
+                return entry.getSize();
+            }
+        }
+        ResourceMetadataCache.Metadata metadata = getCachedMetadata(url);
+        if (metadata != null) {
+            if (!metadata.exists()) {
+                throw new FileNotFoundException(this.getDescription() + " cannot be resolved for checking its content length because it does not exist");
+            }
+            if (metadata.getContentLength() >= 0 || isHttpURL(url)) {
+                return metadata.getContentLength();
+            }
+        }
+        URLConnection con = url.openConnection();
+        this.customizeConnection(con);
+        if (con instanceof JarURLConnection) {
+            JarURLConnection jarCon = (JarURLConnection) con;
+            JarEntry entry = jarCon.getJarEntry(); //指向整个jar时是null，条目不存在会抛FileNotFoundException
+            long size = (entry != null ? entry.getSize() : -1);
+            if (!jarCon.getUseCaches()) {
+                jarCon.getJarFile().close();
+            }
+            if (size >= 0) {
+                return size;
+            }
         } else {
-            URLConnection con = url.openConnection();
-            this.customizeConnection(con);
-            return (long)con.getContentLength();
+            long length = con.getContentLengthLong();
+            if (length >= 0 || con instanceof HttpURLConnection) {
+                return length;
+            }
         }
+        return super.contentLength();
+    }
+
+    /**
+     * file协议的资源直接打开FileChannel，transferTo可以零拷贝；
+     * 解析不成本地文件(例如vfs)时退回到包装输入流
+     */
+    @Override
+    public ReadableByteChannel readableChannel() throws IOException {
+        URL url = this.getURL();
+        if (ResourceUtils.isFileURL(url)) {
+            try {
+                return FileChannel.open(this.getFile().toPath(), StandardOpenOption.READ);
+            } catch (FileNotFoundException | NoSuchFileException e) {
+                //交给输入流，不存在时由它抛出FileNotFoundException
+            }
+        }
+        return super.readableChannel();
+    }
+
+    //只有file协议并且是普通文件才能映射，jar中的条目是压缩过的，不能映射
+    @Override
+    public boolean isMappable() {
+        try {
+            return (ResourceUtils.isFileURL(this.getURL()) && this.getFile().isFile());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 通过getFile()解析成本地文件再映射，例如类路径目录下的ClassPathResource
+     */
+    @Override
+    public MappedByteBuffer[] map() throws IOException {
+        return mapReadOnly(this.getFile());
     }
 
     @Override
     public long lastModified() throws IOException {
         URL url = this.getURL();
         if(!ResourceUtils.isFileURL(url) && !ResourceUtils.isJarURL(url)){
+            ResourceMetadataCache.Metadata metadata = getCachedMetadata(url);
+            if (metadata != null) {
+                return metadata.getLastModified();
+            }
             URLConnection con = url.openConnection();
             this.customizeConnection(con);
             return con.getLastModified(); //header-last-modified
@@ -154,7 +397,7 @@ public abstract class AbstractFileResolvingResource extends AbstractResource{
     }
 
     /**
-     * 自定义HttpURLConnection，在exists，contentLength，lastModified方法调用，
+     * 自定义HttpURLConnection，在exists，contentLength，lastModified以及探测元数据时调用，
      * 默认设置请求方法HEAD，可以在子类中重写
      * HEAD：类似于get请求，只不过返回的响应中没有具体的内容，用于获取报头
      */
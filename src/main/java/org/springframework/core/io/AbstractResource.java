@@ -11,16 +11,30 @@ import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 
 /**
  * 基础的抽象资源类
  * https://www.cnblogs.com/zrtqsk/p/4015323.html
  * 1. 唯一的getInputStream()留给子类实现
- * 2. contentLength方法，打开文件流，读取一遍来判断字节数
+ * 2. contentLength方法，子类能从元数据(文件大小，jar条目大小，Content-Length)得到长度时应该覆盖；
+ * 这里是最后的退路，打开流用一个可重复使用的大缓冲区读到结尾来计数
  * 3. getDescription() 描述符留给子类实现
+ * 4. readableChannel()默认包装输入流，文件系统中的资源在子类中返回FileChannel；
+ * transferTo遇到FileChannel时零拷贝，否则用一个64K的缓冲区复制
  *
  */
 public abstract class AbstractResource implements Resource{
+
+    //transferTo不能零拷贝时，以及contentLength读到结尾时使用的缓冲区大小
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
     public AbstractResource(){}
 
     @Override
@@ -67,7 +81,12 @@ public abstract class AbstractResource implements Resource{
         }
     }
 
-    //这个资源内容长度实际就是资源的字节长度，通过全部读取一遍来判断。这个方法调用起来很占资源啊！
+    /**
+     * 这个资源内容长度实际就是资源的字节长度，只在拿不到元数据时使用：
+     * 1. 原来用255字节的缓冲区整个读一遍，调用次数多，几百M的资源很慢
+     * 2. 现在用一个64K的缓冲区反复读，以read返回-1作为结尾；
+     * 不能用skip，FileInputStream之类越过结尾之后skip仍然返回请求的长度，永远读不到结尾
+     */
     @Override
     public long contentLength() throws IOException{
         InputStream is = this.getInputStream();
@@ -75,9 +94,9 @@ public abstract class AbstractResource implements Resource{
 
         try {
             long size = 0;
-            byte[] buf = new byte[255]; //为什么是255？
+            byte[] buffer = new byte[TRANSFER_BUFFER_SIZE];
             int read;
-            while((read = is.read(buf)) != -1){
+            while ((read = is.read(buffer)) != -1) {
                 size += read;
             }
             return size;
@@ -89,6 +108,52 @@ public abstract class AbstractResource implements Resource{
         }
     }
 
+    @Override
+    public ReadableByteChannel readableChannel() throws IOException {
+        return Channels.newChannel(getInputStream());
+    }
+
+    /**
+     * 1. FileChannel：循环调用transferTo，一次不一定能传完(例如socket的发送缓冲区满了)，从上次的位置继续；
+     * 文件在传输过程中变短时，以实际传输的为准
+     * 2. 其他Channel：读到缓冲区再写出去
+     */
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        Assert.notNull(target, "Target channel must not be null");
+        ReadableByteChannel channel = readableChannel();
+        try {
+            if (channel instanceof FileChannel) {
+                FileChannel fileChannel = (FileChannel) channel;
+                long size = fileChannel.size();
+                long position = 0;
+                while (position < size) {
+                    long transferred = fileChannel.transferTo(position, size - position, target);
+                    if (transferred <= 0 && position >= fileChannel.size()) {
+                        break;
+                    }
+                    position += transferred;
+                }
+                return position;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(TRANSFER_BUFFER_SIZE);
+            long total = 0;
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    total += target.write(buffer);
+                }
+                buffer.clear();
+            }
+            return total;
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
     @Override
     public long lastModified() throws IOException{
         long lastModified = this.getFileForLastModifiedCheck().lastModified();
@@ -99,6 +164,35 @@ public abstract class AbstractResource implements Resource{
         }
     }
 
+    /**
+     * 以只读方式映射整个文件，给MappableResource的实现使用；建立映射后Channel就可以关闭了：
+     * 不管文件多大都按SEGMENT_SIZE分段，寻址只有一种规则；空文件返回一个空的段
+     * @see MappableResource#map()
+     */
+    protected MappedByteBuffer[] mapReadOnly(File file) throws IOException {
+        if (!file.isFile()) {
+            throw new FileNotFoundException(getDescription() + " cannot be mapped because it is not a regular file");
+        }
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            int segmentCount = (int) Math.max(1,
+                    (size + MappableResource.SEGMENT_SIZE - 1) / MappableResource.SEGMENT_SIZE);
+            MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long position = (long) i * MappableResource.SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MappableResource.SEGMENT_SIZE, size - position));
+            }
+            return segments;
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
     protected File getFileForLastModifiedCheck() throws IOException{
         return this.getFile();
     }
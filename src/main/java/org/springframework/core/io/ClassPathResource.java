@@ -72,8 +72,17 @@ public class ClassPathResource extends AbstractFileResolvingResource{
         return (resolveURL() != null);
     }
 
+    /**
+     * 设置了JarFileCache并且资源在本地jar中时从共享的JarFile读取，否则交给类加载器
+     */
     @Override
     public InputStream getInputStream() throws IOException {
+        if (getJarFileCache() != null) {
+            URL url = resolveURL();
+            if (url != null && getJarFileCache(url) != null) {
+                return getJarFileCache(url).getInputStream(url);
+            }
+        }
         InputStream is;
         if (this.clazz != null) {
             is = this.clazz.getResourceAsStream(this.path);
@@ -99,7 +108,10 @@ public class ClassPathResource extends AbstractFileResolvingResource{
 
     public Resource createRelative(String relativePath){
         String pathToUse = StringUtils.applyRelativePath(this.path, relativePath);
-        return new ClassPathResource(pathToUse, classLoader, clazz);
+        ClassPathResource relative = new ClassPathResource(pathToUse, classLoader, clazz);
+        relative.setMetadataCache(getMetadataCache());
+        relative.setJarFileCache(getJarFileCache());
+        return relative;
     }
 
     public String getFilename() {
@@ -15,6 +15,10 @@ public class DefaultResourceLoader implements ResourceLoader{
 
     private ClassLoader classLoader;
 
+    private ResourceMetadataCache metadataCache;
+
+    private JarFileCache jarFileCache;
+
     //直接用默认的类加载器
     public DefaultResourceLoader() {
         this.classLoader = ClassUtils.getDefaultClassLoader();
@@ -29,6 +33,30 @@ public class DefaultResourceLoader implements ResourceLoader{
         this.classLoader = classLoader;
     }
 
+    /**
+     * 设置后加载的ClassPathResource，UrlResource都使用这个元数据缓存
+     * @see AbstractFileResolvingResource#setMetadataCache
+     */
+    public void setMetadataCache(ResourceMetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
+
+    public ResourceMetadataCache getMetadataCache() {
+        return this.metadataCache;
+    }
+
+    /**
+     * 设置后加载的ClassPathResource，UrlResource都共享这个JarFile缓存
+     * @see AbstractFileResolvingResource#setJarFileCache
+     */
+    public void setJarFileCache(JarFileCache jarFileCache) {
+        this.jarFileCache = jarFileCache;
+    }
+
+    public JarFileCache getJarFileCache() {
+        return this.jarFileCache;
+    }
+
     @Override
     public ClassLoader getClassLoader() {
         return this.classLoader != null ? this.classLoader : ClassUtils.getDefaultClassLoader();
@@ -37,18 +65,30 @@ public class DefaultResourceLoader implements ResourceLoader{
     @Override
     public Resource getResource(String location) {
         Assert.notNull(location, "Location must not be null");
+        Resource resource;
         if(location.startsWith("classpath:")){ //若是以classpath:开头就是classpath资源
-            return new ClassPathResource(location.substring("classpath:".length()), this.getClassLoader());
+            resource = new ClassPathResource(location.substring("classpath:".length()), this.getClassLoader());
         }else { //其余的统一当成URL资源
             try {
                 URL url = new URL(location);
-                return new UrlResource(url);
+                resource = new UrlResource(url);
             } catch (MalformedURLException var3) {
                 //如果不以classpath开头，但是又不是合法URL，那就使用classpathContext类，但是本质还是ClassPathResource
                 //通过location拿到资源对象
-                return this.getResourceByPath(location);
+                resource = this.getResourceByPath(location);
+            }
+        }
+        //子类的getResourceByPath自己设置过的话不覆盖
+        if (resource instanceof AbstractFileResolvingResource) {
+            AbstractFileResolvingResource fileResolvingResource = (AbstractFileResolvingResource) resource;
+            if (this.metadataCache != null && fileResolvingResource.getMetadataCache() == null) {
+                fileResolvingResource.setMetadataCache(this.metadataCache);
+            }
+            if (this.jarFileCache != null && fileResolvingResource.getJarFileCache() == null) {
+                fileResolvingResource.setJarFileCache(this.jarFileCache);
             }
         }
+        return resource;
     }
 
     protected Resource getResourceByPath(String path) {
@@ -69,7 +109,10 @@ public class DefaultResourceLoader implements ResourceLoader{
         public Resource createRelative(String relativePath) {
             //工具类直接复用
             String pathToUse = StringUtils.applyRelativePath(this.getPath(), relativePath);
-            return new DefaultResourceLoader.ClassPathContextResource(pathToUse, this.getClassLoader());
+            ClassPathContextResource relative = new DefaultResourceLoader.ClassPathContextResource(pathToUse, this.getClassLoader());
+            relative.setMetadataCache(getMetadataCache());
+            relative.setJarFileCache(getJarFileCache());
+            return relative;
         }
     }
 }
@@ -0,0 +1,136 @@
+package org.springframework.core.io;
+
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 文件系统中的资源，直接持有File，不需要经过URL解析：
+ * 1. 长度，修改时间都直接取文件的元数据
+ * 2. readableChannel()返回FileChannel，transferTo可以零拷贝，适合输出大的静态文件
+ * 3. 相对路径按路径字符串拼接，和ClassPathResource一样
+ * 4. 普通文件可以直接映射到内存
+ */
+public class FileSystemResource extends AbstractResource implements MappableResource {
+
+    private final File file;
+
+    private final String path; //清理过的路径
+
+    public FileSystemResource(File file) {
+        Assert.notNull(file, "File must not be null");
+        this.file = file;
+        this.path = StringUtils.cleanPath(file.getPath());
+    }
+
+    public FileSystemResource(String path) {
+        Assert.notNull(path, "Path must not be null");
+        this.file = new File(path);
+        this.path = StringUtils.cleanPath(path);
+    }
+
+    public final String getPath() {
+        return this.path;
+    }
+
+    @Override
+    public boolean exists() {
+        return this.file.exists();
+    }
+
+    @Override
+    public boolean isReadable() {
+        return (this.file.canRead() && !this.file.isDirectory());
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        try {
+            return Files.newInputStream(this.file.toPath());
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(getDescription() + " cannot be opened because it does not exist");
+        }
+    }
+
+    @Override
+    public ReadableByteChannel readableChannel() throws IOException {
+        try {
+            return FileChannel.open(this.file.toPath(), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(getDescription() + " cannot be opened because it does not exist");
+        }
+    }
+
+    @Override
+    public boolean isMappable() {
+        return this.file.isFile();
+    }
+
+    @Override
+    public MappedByteBuffer[] map() throws IOException {
+        return mapReadOnly(this.file);
+    }
+
+    @Override
+    public URL getURL() throws IOException {
+        return this.file.toURI().toURL();
+    }
+
+    @Override
+    public URI getURI() throws IOException {
+        return this.file.toURI();
+    }
+
+    @Override
+    public File getFile() {
+        return this.file;
+    }
+
+    //文件不存在时length()也是0，需要区分开
+    @Override
+    public long contentLength() throws IOException {
+        long length = this.file.length();
+        if (length == 0L && !this.file.exists()) {
+            throw new FileNotFoundException(getDescription() +
+                    " cannot be resolved in the file system for checking its content length");
+        }
+        return length;
+    }
+
+    @Override
+    public Resource createRelative(String relativePath) {
+        String pathToUse = StringUtils.applyRelativePath(this.path, relativePath);
+        return new FileSystemResource(pathToUse);
+    }
+
+    @Override
+    public String getFilename() {
+        return this.file.getName();
+    }
+
+    public String getDescription() {
+        return "file [" + this.file.getAbsolutePath() + "]";
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return (obj == this || (obj instanceof FileSystemResource && this.path.equals(((FileSystemResource) obj).path)));
+    }
+
+    @Override
+    public int hashCode() {
+        return this.path.hashCode();
+    }
+}
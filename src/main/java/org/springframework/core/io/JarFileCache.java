@@ -0,0 +1,279 @@
+package org.springframework.core.io;
+
+import org.springframework.util.Assert;
+import org.springframework.util.ResourceUtils;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * 共享的JarFile缓存，同一个jar(例如fat jar)中的大量资源共用一个打开的JarFile：
+ * 1. 原来每次通过JarURLConnection读取都要重新打开jar(或者检查JVM的缓存)，这里打开一次之后一直复用
+ * 2. 打开时遍历一次中央目录，按条目名建立索引，之后查条目大小，时间，是否存在都只是一次HashMap查找
+ * 3. 引用计数：正在读取的流持有引用，被淘汰的jar等最后一个流关闭时才真正关闭，不会影响正在进行的读取
+ * 4. 淘汰策略：按最近使用(LRU)最多保留maxOpenJars个；jar文件的修改时间变了也会淘汰，下次访问重新打开
+ * 5. 只处理本地文件系统中的jar，即jar:file:...!/entry，嵌套的jar交给JarURLConnection
+ * @see AbstractFileResolvingResource#setJarFileCache
+ * @see DefaultResourceLoader#setJarFileCache
+ */
+public class JarFileCache {
+
+    private static final String JAR_URL_SEPARATOR = "!/";
+
+    private int maxOpenJars = 32;
+
+    //jar的绝对路径 -> 打开的jar，按访问顺序排列，最久没用的在前面；所有访问都在这个对象上同步
+    private final LinkedHashMap<String, CachedJar> jars = new LinkedHashMap<String, CachedJar>(16, 0.75f, true);
+
+    public void setMaxOpenJars(int maxOpenJars) {
+        Assert.state(maxOpenJars > 0, "'maxOpenJars' must be positive");
+        this.maxOpenJars = maxOpenJars;
+    }
+
+    public int getMaxOpenJars() {
+        return this.maxOpenJars;
+    }
+
+    /**
+     * 是否能由这个缓存处理：jar协议，外层是本地文件，并且指向jar中的某个条目(不是jar本身)
+     */
+    public boolean supports(URL url) {
+        if (!ResourceUtils.isJarURL(url)) {
+            return false;
+        }
+        String urlFile = url.getFile();
+        int separatorIndex = urlFile.indexOf(JAR_URL_SEPARATOR);
+        return (separatorIndex != -1 && urlFile.startsWith("file:") &&
+                urlFile.indexOf(JAR_URL_SEPARATOR, separatorIndex + 2) == -1 &&
+                separatorIndex + 2 < urlFile.length());
+    }
+
+    /**
+     * 返回URL对应的jar条目，不存在时返回null；返回的条目是共享的，不要修改
+     */
+    public JarEntry getEntry(URL url) throws IOException {
+        Assert.state(supports(url), "Not a jar entry URL in the local file system: " + url);
+        CachedJar jar = acquire(getJarFile(url));
+        try {
+            return jar.getEntry(getEntryName(url));
+        } finally {
+            release(jar);
+        }
+    }
+
+    /**
+     * 打开URL对应条目的输入流，流关闭前jar不会被关闭
+     * @throws FileNotFoundException 条目不存在时
+     */
+    public InputStream getInputStream(URL url) throws IOException {
+        Assert.state(supports(url), "Not a jar entry URL in the local file system: " + url);
+        final CachedJar jar = acquire(getJarFile(url));
+        try {
+            JarEntry entry = jar.getEntry(getEntryName(url));
+            if (entry == null) {
+                throw new FileNotFoundException("JAR entry " + getEntryName(url) + " not found in " + jar.jarFile.getName());
+            }
+            return new FilterInputStream(jar.jarFile.getInputStream(entry)) {
+                private final AtomicBoolean closed = new AtomicBoolean();
+
+                @Override
+                public void close() throws IOException {
+                    if (this.closed.compareAndSet(false, true)) {
+                        try {
+                            super.close();
+                        } finally {
+                            release(jar);
+                        }
+                    }
+                }
+            };
+        } catch (IOException | RuntimeException ex) {
+            release(jar);
+            throw ex;
+        }
+    }
+
+    //缓存中的jar数量，不包括已经淘汰但还有流没关闭的
+    public synchronized int getOpenJarCount() {
+        return this.jars.size();
+    }
+
+    /**
+     * 淘汰所有jar：没有在用的立即关闭，在用的等最后一个流关闭
+     */
+    public void clear() {
+        synchronized (this) {
+            for (Iterator<CachedJar> it = this.jars.values().iterator(); it.hasNext(); ) {
+                CachedJar jar = it.next();
+                it.remove();
+                evict(jar);
+            }
+        }
+    }
+
+    private static File getJarFile(URL url) throws IOException {
+        return ResourceUtils.getFile(ResourceUtils.extractJarFileURL(url), "Jar URL");
+    }
+
+    //!/后面的部分，URL中的转义按UTF-8还原，+号保持原样
+    private static String getEntryName(URL url) throws MalformedURLException {
+        String urlFile = url.getFile();
+        String entryName = urlFile.substring(urlFile.indexOf(JAR_URL_SEPARATOR) + 2);
+        if (entryName.indexOf('%') == -1) {
+            return entryName;
+        }
+        try {
+            return URLDecoder.decode(entryName.replace("+", "%2B"), "UTF-8");
+        } catch (IllegalArgumentException | UnsupportedEncodingException ex) {
+            MalformedURLException exToThrow = new MalformedURLException("Invalid JAR entry name in " + url);
+            exToThrow.initCause(ex);
+            throw exToThrow;
+        }
+    }
+
+    /**
+     * 取得jar并加一次引用：
+     * 1. 缓存中有并且修改时间没变就直接用
+     * 2. 否则在锁外打开(打开和建立索引比较慢，不阻塞其他jar的访问)，放进去时发现别人已经放了就关掉自己的
+     */
+    private CachedJar acquire(File file) throws IOException {
+        String key = file.getAbsolutePath();
+        long lastModified = file.lastModified();
+        synchronized (this) {
+            CachedJar jar = this.jars.get(key);
+            if (jar != null) {
+                if (jar.lastModified == lastModified) {
+                    jar.refCount++;
+                    return jar;
+                }
+                //jar被替换过了
+                this.jars.remove(key);
+                evict(jar);
+            }
+        }
+        if (lastModified == 0L && !file.isFile()) {
+            throw new FileNotFoundException("JAR file " + file + " does not exist");
+        }
+        CachedJar opened = open(file, lastModified);
+        CachedJar existing;
+        synchronized (this) {
+            existing = this.jars.get(key);
+            if (existing != null && existing.lastModified == lastModified) {
+                existing.refCount++;
+            } else {
+                if (existing != null) {
+                    this.jars.remove(key);
+                    evict(existing);
+                    existing = null;
+                }
+                opened.refCount++;
+                this.jars.put(key, opened);
+                trimToSize();
+            }
+        }
+        if (existing != null) {
+            //别人已经放进去了，用它的，自己打开的关掉
+            closeQuietly(opened);
+            return existing;
+        }
+        return opened;
+    }
+
+    private static CachedJar open(File file, long lastModified) throws IOException {
+        JarFile jarFile = new JarFile(file);
+        try {
+            return new CachedJar(jarFile, lastModified);
+        } catch (RuntimeException ex) {
+            jarFile.close();
+            throw ex;
+        }
+    }
+
+    private void release(CachedJar jar) {
+        boolean close;
+        synchronized (this) {
+            jar.refCount--;
+            close = (jar.evicted && jar.refCount == 0);
+        }
+        if (close) {
+            closeQuietly(jar);
+        }
+    }
+
+    //调用时持有锁，从最久没用的开始淘汰
+    private void trimToSize() {
+        for (Iterator<CachedJar> it = this.jars.values().iterator(); this.jars.size() > this.maxOpenJars && it.hasNext(); ) {
+            CachedJar jar = it.next();
+            it.remove();
+            evict(jar);
+        }
+    }
+
+    //调用时持有锁，已经从map中移除；没有引用的直接关闭，否则等release
+    private void evict(CachedJar jar) {
+        jar.evicted = true;
+        if (jar.refCount == 0) {
+            closeQuietly(jar);
+        }
+    }
+
+    private static void closeQuietly(CachedJar jar) {
+        try {
+            jar.jarFile.close();
+        } catch (IOException e) {
+        }
+    }
+
+
+    /**
+     * 一个打开的jar，refCount和evicted在JarFileCache上同步访问
+     */
+    private static final class CachedJar {
+
+        final JarFile jarFile;
+
+        //打开时jar文件的修改时间
+        final long lastModified;
+
+        //条目名 -> 条目，打开时遍历一次中央目录建立
+        private final Map<String, JarEntry> index;
+
+        int refCount;
+
+        boolean evicted;
+
+        CachedJar(JarFile jarFile, long lastModified) {
+            this.jarFile = jarFile;
+            this.lastModified = lastModified;
+            this.index = new HashMap<String, JarEntry>(Math.max(16, (int) (jarFile.size() / 0.75f) + 1));
+            for (Enumeration<JarEntry> entries = jarFile.entries(); entries.hasMoreElements(); ) {
+                JarEntry entry = entries.nextElement();
+                this.index.put(entry.getName(), entry);
+            }
+        }
+
+        //和JarFile.getEntry一样，找不到时再按目录找一次
+        JarEntry getEntry(String name) {
+            JarEntry entry = this.index.get(name);
+            if (entry == null && !name.endsWith("/")) {
+                entry = this.index.get(name + "/");
+            }
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.springframework.core.io;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+
+/**
+ * 可以把内容映射到内存的资源，适合字典，模型表这类很大的只读数据文件：
+ * 1. 映射在堆外，不像getInputStream()那样把内容全部复制到堆中，页面在第一次访问时才由操作系统加载
+ * 2. 返回的都是只读映射，多个线程可以共享同一份映射，各自用duplicate()得到独立的position/limit即可
+ * 3. 映射在buffer被回收后才释放，关闭资源或文件都不影响已经建立的映射
+ */
+public interface MappableResource extends Resource {
+
+    /**
+     * 文件总是按这个大小分段映射，除最后一段外每段都是这么大，
+     * 文件中的位置pos在第(pos >>> 30)段的(pos & (SEGMENT_SIZE - 1))处，不管文件多大都是这个规则
+     */
+    int SEGMENT_SIZE = 1 << 30;
+
+    /**
+     * 是否能解析成文件系统中的普通文件，只有这种资源才能映射
+     */
+    boolean isMappable();
+
+    /**
+     * 以只读方式映射整个文件：
+     * 按SEGMENT_SIZE分段，不超过SEGMENT_SIZE字节(包括空文件)时只有一段
+     * @throws java.io.FileNotFoundException 不能解析成文件系统中的文件时
+     */
+    MappedByteBuffer[] map() throws IOException;
+}
@@ -4,6 +4,8 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * https://blog.csdn.net/u010086122/article/details/81607127
@@ -53,6 +55,19 @@ public interface Resource extends InputStreamSource{
 
     long contentLength() throws IOException;
 
+    /**
+     * 返回读取资源内容的Channel，每次调用都是新的，使用完后要关闭；
+     * 文件系统中的资源返回FileChannel，其他资源包装getInputStream()
+     */
+    ReadableByteChannel readableChannel() throws IOException;
+
+    /**
+     * 把资源的全部内容写到target中，返回写入的字节数，不关闭target；
+     * readableChannel()是FileChannel时使用FileChannel.transferTo，由操作系统直接复制(例如sendfile)，
+     * 内容不经过用户空间的字节数组；target应该是阻塞模式的
+     */
+    long transferTo(WritableByteChannel target) throws IOException;
+
     //最后修改时间
     long lastModified() throws IOException;
 
@@ -0,0 +1,180 @@
+package org.springframework.core.io;
+
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 资源元数据(是否存在，长度，修改时间，ETag)的缓存，按URL保存，给AbstractFileResolvingResource使用：
+ * 1. exists()，contentLength()，lastModified()原来每次都要打开一次URLConnection(发HTTP请求或者打开jar)，
+ * 现在在有效期(timeToLive)内直接用缓存的结果，不存在的资源也会缓存
+ * 2. 过期后不是直接丢掉，而是带着旧的元数据去重新验证：HTTP用If-None-Match/If-Modified-Since，
+ * 返回304就只延长有效期；jar中的条目先比较jar文件本身的修改时间，没变就不用再打开jar
+ * 3. key是URL的字符串形式，不用URL本身，URL.equals会解析主机名
+ * 4. 和retriever缓存一样不加锁，同一个URL同时过期时可能重复探测几次，结果以后放进去的为准
+ * 5. 探测失败(IOException)不缓存，直接抛给调用者
+ * @see AbstractFileResolvingResource#setMetadataCache
+ * @see DefaultResourceLoader#setMetadataCache
+ */
+public class ResourceMetadataCache {
+
+    private volatile long timeToLiveMillis = 10000;
+
+    private volatile int maxEntries = 1024;
+
+    private final Map<String, Metadata> cache = new ConcurrentHashMap<String, Metadata>();
+
+    /**
+     * 缓存的有效期，0表示每次都重新验证(仍然是条件请求，没变化时代价很小)；
+     * 很大的值(例如Long.MAX_VALUE)换算成纳秒时不会溢出，相当于永不过期
+     */
+    public void setTimeToLiveMillis(long timeToLiveMillis) {
+        Assert.state(timeToLiveMillis >= 0, "'timeToLiveMillis' must not be negative");
+        this.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    public long getTimeToLiveMillis() {
+        return this.timeToLiveMillis;
+    }
+
+    /**
+     * 最多缓存多少个URL，超过时先清掉过期的，还不够就清掉一部分
+     */
+    public void setMaxEntries(int maxEntries) {
+        Assert.state(maxEntries > 0, "'maxEntries' must be positive");
+        this.maxEntries = maxEntries;
+    }
+
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    /**
+     * 返回URL的元数据：有效期内直接返回，否则交给probe探测(过期的元数据作为重新验证的依据传过去)
+     */
+    public Metadata getMetadata(URL url, MetadataProbe probe) throws IOException {
+        String key = url.toExternalForm();
+        Metadata cached = this.cache.get(key);
+        long now = System.nanoTime();
+        if (cached != null && now - cached.validatedAt < TimeUnit.MILLISECONDS.toNanos(this.timeToLiveMillis)) {
+            return cached;
+        }
+        Metadata probed = probe.probe(url, cached);
+        Assert.state(probed != null, "MetadataProbe must not return null");
+        //probe返回旧的元数据表示没有变化，只更新验证时间
+        Metadata validated = (probed == cached ? cached.revalidated(now) : probed.revalidated(now));
+        if (cached == null && this.cache.size() >= this.maxEntries) {
+            evict(now);
+        }
+        this.cache.put(key, validated);
+        return validated;
+    }
+
+    //清掉某个URL的缓存，例如知道资源已经被修改
+    public void evict(URL url) {
+        this.cache.remove(url.toExternalForm());
+    }
+
+    public void clear() {
+        this.cache.clear();
+    }
+
+    public int size() {
+        return this.cache.size();
+    }
+
+    private void evict(long now) {
+        long ttlNanos = TimeUnit.MILLISECONDS.toNanos(this.timeToLiveMillis);
+        for (Iterator<Metadata> it = this.cache.values().iterator(); it.hasNext(); ) {
+            if (now - it.next().validatedAt >= ttlNanos) {
+                it.remove();
+            }
+        }
+        //都还没过期，随便清掉一半，不维护访问顺序
+        int toRemove = this.cache.size() - this.maxEntries / 2;
+        for (Iterator<Metadata> it = this.cache.values().iterator(); toRemove > 0 && it.hasNext(); toRemove--) {
+            it.next();
+            it.remove();
+        }
+    }
+
+
+    /**
+     * 探测一个URL的元数据，由资源自己实现(连接方式，请求方法等由资源决定)
+     */
+    public interface MetadataProbe {
+
+        /**
+         * @param url 要探测的URL
+         * @param previous 已经过期的元数据，第一次探测时是null；可以用它做条件请求，没有变化时直接返回它
+         */
+        Metadata probe(URL url, Metadata previous) throws IOException;
+    }
+
+
+    /**
+     * 一个URL的元数据，不可变
+     */
+    public static final class Metadata {
+
+        private final boolean exists;
+
+        private final long contentLength;
+
+        private final long lastModified;
+
+        private final String eTag;
+
+        //最后一次验证的时间(System.nanoTime)
+        private final long validatedAt;
+
+        /**
+         * @param exists 是否存在
+         * @param contentLength 长度，-1表示未知
+         * @param lastModified 修改时间，0表示未知；jar中的条目是jar文件的修改时间
+         * @param eTag HTTP的ETag，没有时是null
+         */
+        public Metadata(boolean exists, long contentLength, long lastModified, String eTag) {
+            this(exists, contentLength, lastModified, eTag, 0);
+        }
+
+        private Metadata(boolean exists, long contentLength, long lastModified, String eTag, long validatedAt) {
+            this.exists = exists;
+            this.contentLength = contentLength;
+            this.lastModified = lastModified;
+            this.eTag = eTag;
+            this.validatedAt = validatedAt;
+        }
+
+        Metadata revalidated(long validatedAt) {
+            return new Metadata(this.exists, this.contentLength, this.lastModified, this.eTag, validatedAt);
+        }
+
+        public boolean exists() {
+            return this.exists;
+        }
+
+        public long getContentLength() {
+            return this.contentLength;
+        }
+
+        public long getLastModified() {
+            return this.lastModified;
+        }
+
+        public String getETag() {
+            return this.eTag;
+        }
+
+        @Override
+        public String toString() {
+            return "exists=" + this.exists + ", contentLength=" + this.contentLength +
+                    ", lastModified=" + this.lastModified + ", eTag=" + this.eTag;
+        }
+    }
+}
@@ -67,8 +67,13 @@ public class UrlResource extends AbstractFileResolvingResource{
         }
     }
 
+    //本地jar中的条目交给JarFileCache(如果设置了)，不经过JarURLConnection
     @Override
     public InputStream getInputStream() throws IOException {
+        JarFileCache jarFileCache = getJarFileCache(this.url);
+        if (jarFileCache != null) {
+            return jarFileCache.getInputStream(this.url);
+        }
         URLConnection con = url.openConnection();
         ResourceUtils.useCachesIfNecessary(con);
         try {
@@ -109,7 +114,10 @@ public class UrlResource extends AbstractFileResolvingResource{
             relativePath = relativePath.substring(1);
         }
 
-        return new UrlResource(new URL(this.url, relativePath));
+        UrlResource relative = new UrlResource(new URL(this.url, relativePath));
+        relative.setMetadataCache(getMetadataCache());
+        relative.setJarFileCache(getJarFileCache());
+        return relative;
     }
 
     @Override
@@ -0,0 +1,23 @@
+package org.springframework.core.task;
+
+import org.springframework.util.concurrent.ListenableFuture;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 提交任务后返回ListenableFuture，可以注册回调，不需要阻塞在get()上等待结果
+ */
+public interface AsyncListenableTaskExecutor extends AsyncTaskExecutor {
+
+    /**
+     * 提交任务，任务结束后回调收到null
+     * @throws TaskRejectedException 任务被拒绝时
+     */
+    ListenableFuture<?> submitListenable(Runnable task);
+
+    /**
+     * 提交有返回值的任务
+     * @throws TaskRejectedException 任务被拒绝时
+     */
+    <T> ListenableFuture<T> submitListenable(Callable<T> task);
+}
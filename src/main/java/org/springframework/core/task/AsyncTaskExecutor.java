@@ -1,8 +1,38 @@
 package org.springframework.core.task;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
 /**
- * 扩展接口，异步执行架构
+ * 扩展接口，异步执行架构：
+ * 1. 提交任务后立即返回，任务在别的线程中执行
+ * 2. 可以通过submit拿到Future，等待结果或者取消任务
  */
 public interface AsyncTaskExecutor extends TaskExecutor{
 
+    //期望立即开始执行
+    long TIMEOUT_IMMEDIATE = 0;
+
+    //不限制开始执行的等待时间
+    long TIMEOUT_INDEFINITE = Long.MAX_VALUE;
+
+    /**
+     * 执行任务
+     * @param task 要执行的任务
+     * @param startTimeout 期望任务在多长时间内开始执行(毫秒)，只是给实现类的提示，实现类可以忽略
+     * @throws TaskRejectedException 任务被拒绝时
+     */
+    void execute(Runnable task, long startTimeout);
+
+    /**
+     * 提交任务，返回的Future在任务结束后get()返回null
+     * @throws TaskRejectedException 任务被拒绝时
+     */
+    Future<?> submit(Runnable task);
+
+    /**
+     * 提交有返回值的任务
+     * @throws TaskRejectedException 任务被拒绝时
+     */
+    <T> Future<T> submit(Callable<T> task);
 }
@@ -0,0 +1,183 @@
+package org.springframework.core.task;
+
+import org.springframework.util.Assert;
+import org.springframework.util.CustomizableThreadCreator;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureTask;
+
+import java.util.concurrent.*;
+
+/**
+ * 基于ForkJoinPool的线程池，每个工作线程有自己的双端队列，空闲线程从别的线程队列尾部偷任务：
+ * 1. 适合CPU密集的任务，尤其是任务内部还会继续fork子任务的场景，不会像ThreadPoolExecutor一样都挤在一个共享队列上
+ * 2. 线程名，优先级，是否守护线程通过父类CustomizableThreadCreator配置；ForkJoinWorkerThread不能指定线程组，threadGroup不生效
+ * 3. 并行度默认是CPU核数，asyncMode为true时从未join的任务按FIFO处理，适合事件这类只提交不等待的任务
+ * 4. 可以提前调用initialize()，否则第一次提交任务时自动初始化
+ */
+public class ForkJoinTaskExecutor extends CustomizableThreadCreator
+        implements AsyncListenableTaskExecutor, ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    private boolean asyncMode = false;
+
+    private Thread.UncaughtExceptionHandler uncaughtExceptionHandler;
+
+    private int awaitTerminationSeconds = 0;
+
+    private transient volatile ForkJoinPool forkJoinPool;
+
+    private volatile boolean shutdown;
+
+    public ForkJoinTaskExecutor() {
+        super();
+        //和ForkJoinPool.commonPool()一致，默认是守护线程
+        setDaemon(true);
+    }
+
+    public ForkJoinTaskExecutor(String threadNamePrefix) {
+        super(threadNamePrefix);
+        setDaemon(true);
+    }
+
+    public void setParallelism(int parallelism) {
+        Assert.state(parallelism > 0, "'parallelism' must be positive");
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    public void setAsyncMode(boolean asyncMode) {
+        this.asyncMode = asyncMode;
+    }
+
+    public void setUncaughtExceptionHandler(Thread.UncaughtExceptionHandler uncaughtExceptionHandler) {
+        this.uncaughtExceptionHandler = uncaughtExceptionHandler;
+    }
+
+    /**
+     * shutdown时最多阻塞等待线程池终止的秒数，0表示不等待
+     */
+    public void setAwaitTerminationSeconds(int awaitTerminationSeconds) {
+        this.awaitTerminationSeconds = awaitTerminationSeconds;
+    }
+
+    /**
+     * 创建ForkJoinPool，重复调用没有影响；shutdown以后不能再初始化
+     */
+    public synchronized void initialize() {
+        if (this.shutdown) {
+            throw new IllegalStateException("ForkJoinTaskExecutor has already been shut down");
+        }
+        if (this.forkJoinPool == null) {
+            this.forkJoinPool = new ForkJoinPool(
+                    this.parallelism, this, this.uncaughtExceptionHandler, this.asyncMode);
+        }
+    }
+
+    public ForkJoinPool getForkJoinPool() {
+        ForkJoinPool pool = this.forkJoinPool;
+        if (pool == null) {
+            initialize();
+            pool = this.forkJoinPool;
+        }
+        return pool;
+    }
+
+    @Override
+    public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = new NamedForkJoinWorkerThread(pool);
+        thread.setName(nextThreadName());
+        thread.setPriority(getThreadPriority());
+        thread.setDaemon(isDaemon());
+        return thread;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Assert.notNull(task, "Runnable must not be null");
+        ForkJoinPool pool = getForkJoinPool();
+        try {
+            pool.execute(task);
+        } catch (RejectedExecutionException ex) {
+            throw new TaskRejectedException("Executor [" + pool + "] did not accept task: " + task, ex);
+        }
+    }
+
+    /**
+     * ForkJoinPool自己决定什么时候开始执行，startTimeout被忽略
+     */
+    @Override
+    public void execute(Runnable task, long startTimeout) {
+        execute(task);
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        ForkJoinPool pool = getForkJoinPool();
+        try {
+            return pool.submit(task);
+        } catch (RejectedExecutionException ex) {
+            throw new TaskRejectedException("Executor [" + pool + "] did not accept task: " + task, ex);
+        }
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        ForkJoinPool pool = getForkJoinPool();
+        try {
+            return pool.submit(task);
+        } catch (RejectedExecutionException ex) {
+            throw new TaskRejectedException("Executor [" + pool + "] did not accept task: " + task, ex);
+        }
+    }
+
+    @Override
+    public ListenableFuture<?> submitListenable(Runnable task) {
+        ListenableFutureTask<Object> future = new ListenableFutureTask<Object>(task, null);
+        execute(future);
+        return future;
+    }
+
+    @Override
+    public <T> ListenableFuture<T> submitListenable(Callable<T> task) {
+        ListenableFutureTask<T> future = new ListenableFutureTask<T>(task);
+        execute(future);
+        return future;
+    }
+
+    /**
+     * 关闭线程池，已经提交的任务继续执行；awaitTerminationSeconds大于0时阻塞等待线程池终止
+     */
+    public void shutdown() {
+        ForkJoinPool pool;
+        synchronized (this) {
+            this.shutdown = true;
+            pool = this.forkJoinPool;
+        }
+        if (pool == null) {
+            return;
+        }
+        pool.shutdown();
+        if (this.awaitTerminationSeconds > 0) {
+            try {
+                pool.awaitTermination(this.awaitTerminationSeconds, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+
+    /**
+     * ForkJoinWorkerThread的构造方法是protected的，只能通过子类创建
+     */
+    private static class NamedForkJoinWorkerThread extends ForkJoinWorkerThread {
+
+        NamedForkJoinWorkerThread(ForkJoinPool pool) {
+            super(pool);
+        }
+    }
+}
@@ -1,11 +1,241 @@
 package org.springframework.core.task;
 
+import org.springframework.util.Assert;
+import org.springframework.util.ConcurrencyThrottleSupport;
+import org.springframework.util.CustomizableThreadCreator;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureTask;
+
 import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 每个任务都新建一个线程执行，不复用线程：
+ * 1. 线程名，优先级，是否守护线程等通过父类CustomizableThreadCreator配置，也可以指定一个ThreadFactory
+ * 2. 默认不限制并发；设置concurrencyLimit后，达到上限时默认阻塞提交线程，
+ * 设置blockOnLimit为false时直接抛出TaskRejectedException
+ * 3. 设置virtualThreads后在虚拟线程中执行(JDK21及以上)，大量阻塞的任务不会占用平台线程的栈内存；
+ * 当前JVM不支持时退回平台线程，可以通过isVirtualThreadsSupported()提前确认
+ */
+public class SimpleAsyncTaskExecutor extends CustomizableThreadCreator implements AsyncListenableTaskExecutor, Serializable {
+
+    public static final int UNBOUNDED_CONCURRENCY = ConcurrencyThrottleSupport.UNBOUNDED_CONCURRENCY;
+
+    public static final int NO_CONCURRENCY = ConcurrencyThrottleSupport.NO_CONCURRENCY;
+
+    //虚拟线程的工厂，Thread.ofVirtual().factory()，通过反射获取，JVM不支持时为null
+    private static final ThreadFactory virtualThreadFactory = createVirtualThreadFactory();
 
-public class SimpleAsyncTaskExecutor implements TaskExecutor, Serializable {
+    private final ConcurrencyThrottleAdapter concurrencyThrottle = new ConcurrencyThrottleAdapter();
+
+    private ThreadFactory threadFactory;
+
+    private boolean virtualThreads;
+
+    public SimpleAsyncTaskExecutor() {
+        super();
+    }
+
+    public SimpleAsyncTaskExecutor(String threadNamePrefix) {
+        super(threadNamePrefix);
+    }
+
+    public SimpleAsyncTaskExecutor(ThreadFactory threadFactory) {
+        super();
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * 指定线程工厂后，线程名前缀等属性不再生效
+     */
+    public void setThreadFactory(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+    }
+
+    public ThreadFactory getThreadFactory() {
+        return this.threadFactory;
+    }
+
+    /**
+     * 是否在虚拟线程中执行，指定了threadFactory时以threadFactory为准
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    public boolean isVirtualThreads() {
+        return this.virtualThreads;
+    }
+
+    //当前JVM是否支持虚拟线程
+    public static boolean isVirtualThreadsSupported() {
+        return (virtualThreadFactory != null);
+    }
+
+    /**
+     * 同时执行的最大任务数，-1表示不限制，0表示不允许执行
+     */
+    public void setConcurrencyLimit(int concurrencyLimit) {
+        this.concurrencyThrottle.setConcurrencyLimit(concurrencyLimit);
+    }
+
+    public int getConcurrencyLimit() {
+        return this.concurrencyThrottle.getConcurrencyLimit();
+    }
+
+    /**
+     * 达到并发上限时是否阻塞提交线程，默认true；false则抛出TaskRejectedException
+     */
+    public void setBlockOnLimit(boolean blockOnLimit) {
+        this.concurrencyThrottle.setBlockOnLimit(blockOnLimit);
+    }
+
+    public boolean isBlockOnLimit() {
+        return this.concurrencyThrottle.isBlockOnLimit();
+    }
+
+    public boolean isThrottleActive() {
+        return this.concurrencyThrottle.isThrottleActive();
+    }
+
+    //当前正在执行的任务数，只有设置了并发上限时才统计
+    public int getActiveCount() {
+        return this.concurrencyThrottle.getConcurrencyCount();
+    }
 
     @Override
     public void execute(Runnable task) {
+        execute(task, TIMEOUT_INDEFINITE);
+    }
+
+    /**
+     * 设置了并发上限时先占一个名额，任务结束后在finally中释放；
+     * startTimeout为TIMEOUT_IMMEDIATE的任务跳过限流，直接启动
+     */
+    @Override
+    public void execute(Runnable task, long startTimeout) {
+        Assert.notNull(task, "Runnable must not be null");
+        if (isThrottleActive() && startTimeout > TIMEOUT_IMMEDIATE) {
+            this.concurrencyThrottle.beforeAccess();
+            try {
+                doExecute(new ConcurrencyThrottlingRunnable(task));
+            } catch (RuntimeException ex) {
+                //线程没有启动起来，名额要还回去
+                this.concurrencyThrottle.afterAccess();
+                throw ex;
+            } catch (Error err) {
+                this.concurrencyThrottle.afterAccess();
+                throw err;
+            }
+        } else {
+            doExecute(task);
+        }
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        FutureTask<Object> future = new FutureTask<Object>(task, null);
+        execute(future, TIMEOUT_INDEFINITE);
+        return future;
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<T>(task);
+        execute(future, TIMEOUT_INDEFINITE);
+        return future;
+    }
+
+    @Override
+    public ListenableFuture<?> submitListenable(Runnable task) {
+        ListenableFutureTask<Object> future = new ListenableFutureTask<Object>(task, null);
+        execute(future, TIMEOUT_INDEFINITE);
+        return future;
+    }
+
+    @Override
+    public <T> ListenableFuture<T> submitListenable(Callable<T> task) {
+        ListenableFutureTask<T> future = new ListenableFutureTask<T>(task);
+        execute(future, TIMEOUT_INDEFINITE);
+        return future;
+    }
+
+    /**
+     * 真正创建并启动线程，子类可以覆盖
+     */
+    protected void doExecute(Runnable task) {
+        Thread thread;
+        if (this.threadFactory != null) {
+            thread = this.threadFactory.newThread(task);
+        } else if (this.virtualThreads && virtualThreadFactory != null) {
+            thread = virtualThreadFactory.newThread(task);
+            thread.setName(nextThreadName());
+        } else {
+            thread = createThread(task);
+        }
+        thread.start();
+    }
+
+    /**
+     * JDK21才有Thread.ofVirtual()，编译级别是1.8，所以只能反射调用；
+     * 方法通过公开的Thread.Builder接口获取，避免访问JDK内部实现类
+     */
+    private static ThreadFactory createVirtualThreadFactory() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Method factory = builderClass.getMethod("factory");
+            return (ThreadFactory) factory.invoke(ofVirtual.invoke(null));
+        } catch (Throwable ex) {
+            return null;
+        }
+    }
+
+
+    /**
+     * 把ConcurrencyThrottleSupport的protected方法开放给外部类，并换成TaskRejectedException
+     */
+    private static class ConcurrencyThrottleAdapter extends ConcurrencyThrottleSupport {
+
+        @Override
+        protected void beforeAccess() {
+            super.beforeAccess();
+        }
+
+        @Override
+        protected void onLimitReached() {
+            throw new TaskRejectedException("Concurrency limit of " + getConcurrencyLimit() + " reached");
+        }
+
+        @Override
+        protected void afterAccess() {
+            super.afterAccess();
+        }
+    }
+
+
+    /**
+     * 任务结束后释放并发名额
+     */
+    private class ConcurrencyThrottlingRunnable implements Runnable {
+
+        private final Runnable target;
+
+        public ConcurrencyThrottlingRunnable(Runnable target) {
+            this.target = target;
+        }
 
+        @Override
+        public void run() {
+            try {
+                this.target.run();
+            } finally {
+                concurrencyThrottle.afterAccess();
+            }
+        }
     }
 }
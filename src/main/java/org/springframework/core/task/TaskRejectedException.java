@@ -0,0 +1,18 @@
+package org.springframework.core.task;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * TaskExecutor拒绝执行任务时抛出，例如达到并发上限或者已经关闭；
+ * 继承RejectedExecutionException，所以按Executor接口处理的调用方也能正常捕获
+ */
+public class TaskRejectedException extends RejectedExecutionException {
+
+    public TaskRejectedException(String msg) {
+        super(msg);
+    }
+
+    public TaskRejectedException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
+}
@@ -0,0 +1,284 @@
+package org.springframework.core.task;
+
+import org.springframework.util.Assert;
+import org.springframework.util.CustomizableThreadCreator;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureTask;
+
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * 基于ThreadPoolExecutor的线程池，线程复用，适合大量短任务(例如异步监听器，资源加载)：
+ * 1. 线程名，优先级，是否守护线程等通过父类CustomizableThreadCreator配置，自己作为线程池的ThreadFactory
+ * 2. 核心线程数，最大线程数，空闲存活时间，队列容量都可以配置；队列容量为0时使用SynchronousQueue，直接交给线程
+ * 3. 可以提前调用initialize()，否则第一次提交任务时自动初始化
+ * 4. shutdown时可以选择等待队列中的任务执行完(waitForTasksToCompleteOnShutdown)，以及最多等待多久
+ * 5. 线程池拒绝的任务统一抛出TaskRejectedException
+ */
+public class ThreadPoolTaskExecutor extends CustomizableThreadCreator
+        implements AsyncListenableTaskExecutor, ThreadFactory {
+
+    private final Object poolSizeMonitor = new Object();
+
+    private int corePoolSize = 1;
+
+    private int maxPoolSize = Integer.MAX_VALUE;
+
+    private int keepAliveSeconds = 60;
+
+    private int queueCapacity = Integer.MAX_VALUE;
+
+    private boolean allowCoreThreadTimeOut = false;
+
+    private RejectedExecutionHandler rejectedExecutionHandler = new ThreadPoolExecutor.AbortPolicy();
+
+    private boolean waitForTasksToCompleteOnShutdown = false;
+
+    private int awaitTerminationSeconds = 0;
+
+    private transient volatile ThreadPoolExecutor threadPoolExecutor;
+
+    private volatile boolean shutdown;
+
+    public ThreadPoolTaskExecutor() {
+        super();
+    }
+
+    public ThreadPoolTaskExecutor(String threadNamePrefix) {
+        super(threadNamePrefix);
+    }
+
+    /**
+     * 核心线程数，已经初始化的话直接修改线程池
+     */
+    public void setCorePoolSize(int corePoolSize) {
+        synchronized (this.poolSizeMonitor) {
+            this.corePoolSize = corePoolSize;
+            if (this.threadPoolExecutor != null) {
+                this.threadPoolExecutor.setCorePoolSize(corePoolSize);
+            }
+        }
+    }
+
+    public int getCorePoolSize() {
+        synchronized (this.poolSizeMonitor) {
+            return this.corePoolSize;
+        }
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+        synchronized (this.poolSizeMonitor) {
+            this.maxPoolSize = maxPoolSize;
+            if (this.threadPoolExecutor != null) {
+                this.threadPoolExecutor.setMaximumPoolSize(maxPoolSize);
+            }
+        }
+    }
+
+    public int getMaxPoolSize() {
+        synchronized (this.poolSizeMonitor) {
+            return this.maxPoolSize;
+        }
+    }
+
+    public void setKeepAliveSeconds(int keepAliveSeconds) {
+        synchronized (this.poolSizeMonitor) {
+            this.keepAliveSeconds = keepAliveSeconds;
+            if (this.threadPoolExecutor != null) {
+                this.threadPoolExecutor.setKeepAliveTime(keepAliveSeconds, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    public int getKeepAliveSeconds() {
+        synchronized (this.poolSizeMonitor) {
+            return this.keepAliveSeconds;
+        }
+    }
+
+    /**
+     * 队列容量，只在初始化时生效；注意队列没满之前线程数不会超过核心线程数
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public void setAllowCoreThreadTimeOut(boolean allowCoreThreadTimeOut) {
+        this.allowCoreThreadTimeOut = allowCoreThreadTimeOut;
+    }
+
+    /**
+     * 线程池满时的处理策略，默认AbortPolicy，抛出的异常会被转换成TaskRejectedException
+     */
+    public void setRejectedExecutionHandler(RejectedExecutionHandler rejectedExecutionHandler) {
+        this.rejectedExecutionHandler = (rejectedExecutionHandler != null ?
+                rejectedExecutionHandler : new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * shutdown时是否等待已经提交的任务执行完，默认false，会中断正在执行的任务并取消队列中的任务
+     */
+    public void setWaitForTasksToCompleteOnShutdown(boolean waitForTasksToCompleteOnShutdown) {
+        this.waitForTasksToCompleteOnShutdown = waitForTasksToCompleteOnShutdown;
+    }
+
+    /**
+     * shutdown时最多阻塞等待线程池终止的秒数，0表示不等待
+     */
+    public void setAwaitTerminationSeconds(int awaitTerminationSeconds) {
+        this.awaitTerminationSeconds = awaitTerminationSeconds;
+    }
+
+    /**
+     * 创建线程池，重复调用没有影响；shutdown以后不能再初始化
+     */
+    public synchronized void initialize() {
+        if (this.shutdown) {
+            throw new IllegalStateException("ThreadPoolTaskExecutor has already been shut down");
+        }
+        if (this.threadPoolExecutor != null) {
+            return;
+        }
+        BlockingQueue<Runnable> queue = createQueue(this.queueCapacity);
+        ThreadPoolExecutor executor;
+        synchronized (this.poolSizeMonitor) {
+            executor = new ThreadPoolExecutor(this.corePoolSize, this.maxPoolSize,
+                    this.keepAliveSeconds, TimeUnit.SECONDS, queue, this, this.rejectedExecutionHandler);
+        }
+        if (this.allowCoreThreadTimeOut) {
+            executor.allowCoreThreadTimeOut(true);
+        }
+        this.threadPoolExecutor = executor;
+    }
+
+    /**
+     * 创建任务队列，子类可以覆盖，例如换成优先级队列
+     */
+    protected BlockingQueue<Runnable> createQueue(int queueCapacity) {
+        if (queueCapacity > 0) {
+            return new LinkedBlockingQueue<Runnable>(queueCapacity);
+        } else {
+            return new SynchronousQueue<Runnable>();
+        }
+    }
+
+    public ThreadPoolExecutor getThreadPoolExecutor() {
+        ThreadPoolExecutor executor = this.threadPoolExecutor;
+        if (executor == null) {
+            initialize();
+            executor = this.threadPoolExecutor;
+        }
+        return executor;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        return createThread(runnable);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Assert.notNull(task, "Runnable must not be null");
+        ThreadPoolExecutor executor = getThreadPoolExecutor();
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            throw new TaskRejectedException("Executor [" + executor + "] did not accept task: " + task, ex);
+        }
+    }
+
+    /**
+     * 线程池自己决定什么时候开始执行，startTimeout被忽略
+     */
+    @Override
+    public void execute(Runnable task, long startTimeout) {
+        execute(task);
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        ThreadPoolExecutor executor = getThreadPoolExecutor();
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException ex) {
+            throw new TaskRejectedException("Executor [" + executor + "] did not accept task: " + task, ex);
+        }
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        ThreadPoolExecutor executor = getThreadPoolExecutor();
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException ex) {
+            throw new TaskRejectedException("Executor [" + executor + "] did not accept task: " + task, ex);
+        }
+    }
+
+    @Override
+    public ListenableFuture<?> submitListenable(Runnable task) {
+        ListenableFutureTask<Object> future = new ListenableFutureTask<Object>(task, null);
+        execute(future);
+        return future;
+    }
+
+    @Override
+    public <T> ListenableFuture<T> submitListenable(Callable<T> task) {
+        ListenableFutureTask<T> future = new ListenableFutureTask<T>(task);
+        execute(future);
+        return future;
+    }
+
+    /**
+     * 关闭线程池：
+     * 1. waitForTasksToCompleteOnShutdown为true时，不再接收新任务，已经提交的任务继续执行
+     * 2. 否则中断正在执行的任务，队列中还没开始的任务直接取消，等待它们的Future会收到CancellationException
+     * 3. awaitTerminationSeconds大于0时阻塞等待线程池终止
+     */
+    public void shutdown() {
+        ThreadPoolExecutor executor;
+        synchronized (this) {
+            this.shutdown = true;
+            executor = this.threadPoolExecutor;
+        }
+        if (executor == null) {
+            return;
+        }
+        if (this.waitForTasksToCompleteOnShutdown) {
+            executor.shutdown();
+        } else {
+            List<Runnable> remainingTasks = executor.shutdownNow();
+            for (Runnable remainingTask : remainingTasks) {
+                if (remainingTask instanceof Future) {
+                    ((Future<?>) remainingTask).cancel(true);
+                }
+            }
+        }
+        if (this.awaitTerminationSeconds > 0) {
+            try {
+                executor.awaitTermination(this.awaitTerminationSeconds, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    //当前线程数
+    public int getPoolSize() {
+        ThreadPoolExecutor executor = this.threadPoolExecutor;
+        return (executor != null ? executor.getPoolSize() : 0);
+    }
+
+    //正在执行任务的线程数
+    public int getActiveCount() {
+        ThreadPoolExecutor executor = this.threadPoolExecutor;
+        return (executor != null ? executor.getActiveCount() : 0);
+    }
+
+    //排队中的任务数
+    public int getQueueSize() {
+        ThreadPoolExecutor executor = this.threadPoolExecutor;
+        return (executor != null ? executor.getQueue().size() : 0);
+    }
+}
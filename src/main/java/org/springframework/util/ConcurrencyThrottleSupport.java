@@ -0,0 +1,117 @@
+package org.springframework.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+
+/**
+ * 并发限流的基类，限制同时访问某个资源的线程数：
+ * 1. 访问前调用beforeAccess，访问结束后必须调用afterAccess(一般放在finally里)
+ * 2. 达到上限后，默认阻塞等待直到有线程结束访问；设置blockOnLimit为false时改为调用onLimitReached，默认抛出异常
+ * 3. concurrencyLimit为UNBOUNDED_CONCURRENCY(-1)表示不限制，此时isThrottleActive为false，调用方可以跳过限流；
+ *    NO_CONCURRENCY(0)时isThrottleActive为true，beforeAccess直接拒绝
+ */
+public abstract class ConcurrencyThrottleSupport implements Serializable {
+
+    //不限制并发
+    public static final int UNBOUNDED_CONCURRENCY = -1;
+
+    //不允许任何并发访问，相当于关闭
+    public static final int NO_CONCURRENCY = 0;
+
+    private transient Object monitor = new Object();
+
+    private int concurrencyLimit = UNBOUNDED_CONCURRENCY;
+
+    private boolean blockOnLimit = true;
+
+    private int concurrencyCount = 0;
+
+    public void setConcurrencyLimit(int concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    public int getConcurrencyLimit() {
+        return this.concurrencyLimit;
+    }
+
+    /**
+     * 达到上限时是否阻塞等待，false则交给onLimitReached处理
+     */
+    public void setBlockOnLimit(boolean blockOnLimit) {
+        this.blockOnLimit = blockOnLimit;
+    }
+
+    public boolean isBlockOnLimit() {
+        return this.blockOnLimit;
+    }
+
+    public boolean isThrottleActive() {
+        return (this.concurrencyLimit >= 0);
+    }
+
+    //当前正在访问的线程数
+    public int getConcurrencyCount() {
+        synchronized (this.monitor) {
+            return this.concurrencyCount;
+        }
+    }
+
+    /**
+     * 访问之前调用，达到上限时阻塞等待或者调用onLimitReached
+     */
+    protected void beforeAccess() {
+        if (this.concurrencyLimit == NO_CONCURRENCY) {
+            throw new IllegalStateException(
+                    "Currently no invocations allowed - concurrency limit set to NO_CONCURRENCY");
+        }
+        if (this.concurrencyLimit > 0) {
+            synchronized (this.monitor) {
+                if (this.concurrencyCount >= this.concurrencyLimit && !this.blockOnLimit) {
+                    onLimitReached();
+                }
+                boolean interrupted = false;
+                while (this.concurrencyCount >= this.concurrencyLimit) {
+                    if (interrupted) {
+                        throw new IllegalStateException("Thread was interrupted while waiting for invocation access, " +
+                                "but concurrency limit still does not allow for entering");
+                    }
+                    try {
+                        this.monitor.wait();
+                    } catch (InterruptedException ex) {
+                        //保留中断状态，再检查一次，如果还是进不去就放弃
+                        Thread.currentThread().interrupt();
+                        interrupted = true;
+                    }
+                }
+                this.concurrencyCount++;
+            }
+        }
+    }
+
+    /**
+     * 不阻塞时达到上限的处理，默认抛出IllegalStateException，子类可以换成更具体的异常；
+     * 方法正常返回的话会退化为阻塞等待
+     */
+    protected void onLimitReached() {
+        throw new IllegalStateException("Concurrency limit of " + this.concurrencyLimit + " reached");
+    }
+
+    /**
+     * 访问结束后调用，唤醒一个等待的线程
+     */
+    protected void afterAccess() {
+        if (this.concurrencyLimit >= 0) {
+            synchronized (this.monitor) {
+                this.concurrencyCount--;
+                this.monitor.notify();
+            }
+        }
+    }
+
+    //monitor不参与序列化，反序列化时重新创建
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        ois.defaultReadObject();
+        this.monitor = new Object();
+    }
+}
@@ -0,0 +1,11 @@
+package org.springframework.util.concurrent;
+
+import java.util.concurrent.Future;
+
+/**
+ * 可以注册回调的Future，任务结束时回调成功或失败；注册时任务已经结束的话立即回调
+ */
+public interface ListenableFuture<T> extends Future<T> {
+
+    void addCallback(ListenableFutureCallback<? super T> callback);
+}
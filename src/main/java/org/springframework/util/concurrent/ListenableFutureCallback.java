@@ -0,0 +1,17 @@
+package org.springframework.util.concurrent;
+
+/**
+ * ListenableFuture的回调，两个方法只会调用其中一个，并且只调用一次
+ */
+public interface ListenableFutureCallback<T> {
+
+    /**
+     * 任务正常结束
+     */
+    void onSuccess(T result);
+
+    /**
+     * 任务抛出异常或者被取消(CancellationException)
+     */
+    void onFailure(Throwable ex);
+}
@@ -0,0 +1,81 @@
+package org.springframework.util.concurrent;
+
+import org.springframework.util.Assert;
+
+import java.util.LinkedList;
+import java.util.Queue;
+
+/**
+ * 管理ListenableFuture的回调：
+ * 1. 任务结束前注册的回调先放进队列，结束时按注册顺序依次回调
+ * 2. 任务结束后注册的回调直接用保存的结果回调
+ * 状态和队列都由mutex保护，但回调本身在锁外执行，避免回调中再注册回调导致死锁
+ */
+public class ListenableFutureCallbackRegistry<T> {
+
+    private final Queue<ListenableFutureCallback<? super T>> callbacks =
+            new LinkedList<ListenableFutureCallback<? super T>>();
+
+    private State state = State.NEW;
+
+    private Object result;
+
+    private final Object mutex = new Object();
+
+    public void addCallback(ListenableFutureCallback<? super T> callback) {
+        Assert.notNull(callback, "'callback' must not be null");
+        State state;
+        Object result;
+        synchronized (this.mutex) {
+            if (this.state == State.NEW) {
+                this.callbacks.add(callback);
+                return;
+            }
+            state = this.state;
+            result = this.result;
+        }
+        notify(callback, state, result);
+    }
+
+    /**
+     * 任务成功结束，回调所有已注册的回调
+     */
+    public void success(T result) {
+        complete(State.SUCCESS, result);
+    }
+
+    /**
+     * 任务失败，回调所有已注册的回调
+     */
+    public void failure(Throwable ex) {
+        complete(State.FAILURE, ex);
+    }
+
+    private void complete(State state, Object result) {
+        Queue<ListenableFutureCallback<? super T>> callbacks;
+        synchronized (this.mutex) {
+            if (this.state != State.NEW) {
+                return;
+            }
+            this.state = state;
+            this.result = result;
+            callbacks = new LinkedList<ListenableFutureCallback<? super T>>(this.callbacks);
+            this.callbacks.clear();
+        }
+        for (ListenableFutureCallback<? super T> callback : callbacks) {
+            notify(callback, state, result);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void notify(ListenableFutureCallback<? super T> callback, State state, Object result) {
+        if (state == State.SUCCESS) {
+            callback.onSuccess((T) result);
+        } else {
+            callback.onFailure((Throwable) result);
+        }
+    }
+
+
+    private enum State {NEW, SUCCESS, FAILURE}
+}
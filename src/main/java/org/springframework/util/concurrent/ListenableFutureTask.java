@@ -0,0 +1,51 @@
+package org.springframework.util.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * 实现了ListenableFuture的FutureTask，在done()中根据结果触发回调
+ */
+public class ListenableFutureTask<T> extends FutureTask<T> implements ListenableFuture<T> {
+
+    private final ListenableFutureCallbackRegistry<T> callbacks = new ListenableFutureCallbackRegistry<T>();
+
+    public ListenableFutureTask(Callable<T> callable) {
+        super(callable);
+    }
+
+    public ListenableFutureTask(Runnable runnable, T result) {
+        super(runnable, result);
+    }
+
+    @Override
+    public void addCallback(ListenableFutureCallback<? super T> callback) {
+        this.callbacks.addCallback(callback);
+    }
+
+    /**
+     * 任务结束(包括取消)时由FutureTask调用，此时get()不会阻塞
+     */
+    @Override
+    protected final void done() {
+        Throwable cause;
+        try {
+            T result = get();
+            this.callbacks.success(result);
+            return;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException ex) {
+            cause = ex.getCause();
+            if (cause == null) {
+                cause = ex;
+            }
+        } catch (Throwable ex) {
+            //CancellationException
+            cause = ex;
+        }
+        this.callbacks.failure(cause);
+    }
+}